@@ -5,12 +5,16 @@ import com.mcprotector.claim.FactionClaimHandler;
 import com.mcprotector.command.FactionCommands;
 import com.mcprotector.command.FactionRelationCommands;
 import com.mcprotector.config.FactionConfig;
+import com.mcprotector.data.DataSaveExecutor;
 import com.mcprotector.data.FactionData;
+import com.mcprotector.data.PendingRestoreData;
 import com.mcprotector.webmap.WebmapBridge;
 import com.mcprotector.network.FactionClaimMapPacket;
 import com.mcprotector.network.FactionStatePacket;
 import com.mcprotector.network.NetworkHandler;
 import com.mcprotector.protection.ClaimProtectionHandler;
+import com.mcprotector.protection.PermissionDecisionCache;
+import com.mcprotector.service.FactionService;
 import com.mcprotector.service.HomeTeleportManager;
 import com.mcprotector.service.SiegeManager;
 import net.neoforged.bus.api.IEventBus;
@@ -18,12 +22,18 @@ import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.fml.config.ModConfig;
+import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
 import net.neoforged.neoforge.event.entity.player.PlayerEvent;
 import net.neoforged.neoforge.event.level.ChunkWatchEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.server.ServerStartedEvent;
+import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
 import net.neoforged.neoforge.event.tick.ServerTickEvent;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,15 +43,25 @@ public class McProtectorMod {
     public static final String MOD_ID = "mcprotector";
     public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
     private static final int CLAIM_MAP_SYNC_INTERVAL_TICKS = 100;
+    private static final int TIMED_STATE_EXPIRY_INTERVAL_TICKS = 20;
     private int claimMapSyncTicks;
+    private int timedStateExpiryTicks;
+    private int journalSyncTicks;
 
     public McProtectorMod(IEventBus modEventBus, ModContainer modContainer) {
         modEventBus.addListener(this::onCommonSetup);
         modEventBus.addListener(NetworkHandler::registerPayloads);
+        modEventBus.addListener(this::onConfigReloading);
         modContainer.registerConfig(ModConfig.Type.SERVER, FactionConfig.SERVER_SPEC);
         NeoForge.EVENT_BUS.addListener(this::registerCommands);
+        NeoForge.EVENT_BUS.addListener(this::onServerStarting);
         NeoForge.EVENT_BUS.addListener(this::onServerStarted);
+        NeoForge.EVENT_BUS.addListener(this::onServerStopping);
+        NeoForge.EVENT_BUS.addListener(this::onServerStopped);
+        NeoForge.EVENT_BUS.addListener(this::onLevelLoad);
+        NeoForge.EVENT_BUS.addListener(this::onLevelUnload);
         NeoForge.EVENT_BUS.addListener(this::onPlayerLoggedIn);
+        NeoForge.EVENT_BUS.addListener(this::onPlayerLoggedOut);
         NeoForge.EVENT_BUS.addListener(this::onPlayerChangedDimension);
         NeoForge.EVENT_BUS.addListener(this::onServerTick);
         NeoForge.EVENT_BUS.addListener(this::onChunkSent);
@@ -57,11 +77,19 @@ public class McProtectorMod {
         });
     }
 
+    private void onConfigReloading(ModConfigEvent.Reloading event) {
+        FactionData.bumpProtectionEpoch();
+    }
+
     private void registerCommands(RegisterCommandsEvent event) {
         FactionCommands.register(event.getDispatcher());
         FactionRelationCommands.register(event.getDispatcher());
     }
 
+    private void onServerStarting(ServerStartingEvent event) {
+        DataSaveExecutor.setSynchronous(false);
+    }
+
     private void onServerStarted(ServerStartedEvent event) {
         for (var level : event.getServer().getAllLevels()) {
             if (FactionConfig.SERVER.dynmapFullSyncOnStart.get()) {
@@ -70,12 +98,43 @@ public class McProtectorMod {
         }
     }
 
+    private void onServerStopping(ServerStoppingEvent event) {
+        DataSaveExecutor.setSynchronous(true);
+        DataSaveExecutor.awaitIdle();
+    }
+
+    private void onServerStopped(ServerStoppedEvent event) {
+        DataSaveExecutor.awaitIdle();
+        PermissionDecisionCache.clear();
+    }
+
+    private void onLevelLoad(LevelEvent.Load event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            FactionData.onLevelLoad(level);
+            PendingRestoreData.onLevelLoad(level);
+        }
+    }
+
+    private void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            DataSaveExecutor.awaitIdle();
+            FactionData.onLevelUnload(level);
+            PendingRestoreData.onLevelUnload(level);
+        }
+    }
+
     private void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        FactionData.bumpProtectionEpoch();
         if (event.getEntity() instanceof ServerPlayer player) {
             syncPlayerClaimState(player);
         }
     }
 
+    private void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        FactionData.bumpProtectionEpoch();
+        PermissionDecisionCache.forget(event.getEntity().getUUID());
+    }
+
     private void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
         if (event.getEntity() instanceof ServerPlayer player) {
             syncPlayerClaimState(player);
@@ -84,6 +143,16 @@ public class McProtectorMod {
 
     private void onServerTick(ServerTickEvent.Post event) {
         SiegeManager.tick(event.getServer());
+        if (++journalSyncTicks >= FactionConfig.SERVER.journalSyncIntervalTicks.get()) {
+            journalSyncTicks = 0;
+            for (var level : event.getServer().getAllLevels()) {
+                FactionData.get(level).syncJournal();
+            }
+        }
+        if (++timedStateExpiryTicks >= TIMED_STATE_EXPIRY_INTERVAL_TICKS) {
+            timedStateExpiryTicks = 0;
+            FactionService.expireTimedState(event.getServer());
+        }
         if (++claimMapSyncTicks < CLAIM_MAP_SYNC_INTERVAL_TICKS) {
             return;
         }
@@ -21,13 +21,7 @@ public final class FactionCommandSuggestions {
 
     public static CompletableFuture<Suggestions> factionNames(CommandContext<CommandSourceStack> context, SuggestionsBuilder builder) {
         FactionData data = FactionData.get(context.getSource().getLevel());
-        List<String> names = data.getFactions().values().stream()
-            .map(faction -> faction.getName().trim())
-            .filter(name -> !name.isEmpty())
-            .distinct()
-            .sorted(String.CASE_INSENSITIVE_ORDER)
-            .toList();
-        return SharedSuggestionProvider.suggest(names, builder);
+        return SharedSuggestionProvider.suggest(data.suggestFactionNames(builder.getRemaining()), builder);
     }
 
     public static CompletableFuture<Suggestions> onOff(CommandContext<CommandSourceStack> context, SuggestionsBuilder builder) {
@@ -4,6 +4,7 @@ import com.mcprotector.chat.FactionChatManager;
 import com.mcprotector.chat.FactionChatMode;
 import com.mcprotector.claim.FactionClaimManager;
 import com.mcprotector.config.FactionConfig;
+import com.mcprotector.data.ClaimKind;
 import com.mcprotector.data.Faction;
 import com.mcprotector.data.FactionData.FactionAccessLog;
 import com.mcprotector.data.FactionData.FactionInvite;
@@ -12,6 +13,7 @@ import com.mcprotector.data.FactionPermission;
 import com.mcprotector.data.FactionProtectionTier;
 import com.mcprotector.data.FactionRelation;
 import com.mcprotector.protection.FactionBypassManager;
+import com.mcprotector.protection.PermissionDecisionCache;
 import com.mcprotector.webmap.WebmapBridge;
 import com.mcprotector.service.FactionService;
 import com.mcprotector.service.HomeTeleportManager;
@@ -21,6 +23,7 @@ import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.tree.CommandNode;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import net.minecraft.ChatFormatting;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
@@ -36,7 +39,8 @@ import net.minecraft.core.BlockPos;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.List;
@@ -48,6 +52,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public final class FactionCommands {
     private static final long CONFIRM_TIMEOUT_MILLIS = 10_000L;
+    private static final int AUDIT_PAGE_SIZE = 10;
+    private static final String AUDIT_USAGE = "Usage: /faction admin audit [player:<name>] [faction:<name>] [action:<permission>] [since:<6h|30m|2d>] [page:<n>]";
     private static final ConcurrentHashMap<UUID, Long> DISBAND_CONFIRMATIONS = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<UUID, Long> OVERTAKE_CONFIRMATIONS = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<UUID, Long> PERSONAL_WIPE_CONFIRMATIONS = new ConcurrentHashMap<>();
@@ -259,6 +265,14 @@ public final class FactionCommands {
                         .then(Commands.argument("faction", StringArgumentType.greedyString())
                             .suggests(FactionCommandSuggestions::factionNames)
                             .executes(context -> adminUnclaimFactionChunk(context.getSource(), StringArgumentType.getString(context, "faction")))))
+                    .then(Commands.literal("audit")
+                        .executes(context -> adminAudit(context.getSource(), ""))
+                        .then(Commands.argument("filters", StringArgumentType.greedyString())
+                            .executes(context -> adminAudit(context.getSource(), StringArgumentType.getString(context, "filters")))))
+                    .then(Commands.literal("cachestats")
+                        .executes(context -> adminCacheStats(context.getSource(), false))
+                        .then(Commands.literal("reset")
+                            .executes(context -> adminCacheStats(context.getSource(), true))))
                     .then(Commands.literal("personal")
                         .then(Commands.literal("removechunk")
                             .executes(context -> adminRemovePersonalChunk(context.getSource())))
@@ -409,11 +423,10 @@ public final class FactionCommands {
             return 0;
         }
         UUID factionId = faction.get().getId();
-        for (var entry : data.getClaims().entrySet()) {
-            if (factionId.equals(entry.getValue())) {
-                ChunkPos chunkPos = new ChunkPos(entry.getKey());
-                WebmapBridge.updateClaim(chunkPos, Optional.empty(), player.level().dimension().location().toString());
-            }
+        LongIterator claimKeys = data.getClaimKeys(factionId).iterator();
+        while (claimKeys.hasNext()) {
+            ChunkPos chunkPos = new ChunkPos(claimKeys.nextLong());
+            WebmapBridge.updateClaim(chunkPos, Optional.empty(), player.level().dimension().location().toString());
         }
         data.disbandFaction(factionId);
         DISBAND_CONFIRMATIONS.remove(player.getUUID());
@@ -482,7 +495,7 @@ public final class FactionCommands {
             source.sendFailure(Component.literal("You are not in a faction."));
             return 0;
         }
-        int claims = data.getClaimCount(faction.get().getId());
+        int claims = data.getTotalClaimCount(faction.get().getId());
         int maxClaims = data.getMaxClaims(faction.get().getId());
         int level = data.getFactionLevel(faction.get().getId());
         String role = faction.get().getRole(player.getUUID());
@@ -514,7 +527,7 @@ public final class FactionCommands {
             source.sendFailure(Component.literal("Faction not found."));
             return 0;
         }
-        int claims = data.getClaimCount(faction.get().getId());
+        int claims = data.getTotalClaimCount(faction.get().getId());
         int maxClaims = data.getMaxClaims(faction.get().getId());
         int level = data.getFactionLevel(faction.get().getId());
         StringBuilder members = new StringBuilder();
@@ -528,16 +541,11 @@ public final class FactionCommands {
 
         java.util.List<String> allies = new java.util.ArrayList<>();
         java.util.List<String> wars = new java.util.ArrayList<>();
-        for (Map.Entry<UUID, Faction> entry : data.getFactions().entrySet()) {
-            if (entry.getKey().equals(faction.get().getId())) {
-                continue;
-            }
-            FactionRelation relation = data.getRelation(faction.get().getId(), entry.getKey());
-            if (relation == FactionRelation.ALLY) {
-                allies.add(entry.getValue().getName());
-            } else if (relation == FactionRelation.WAR) {
-                wars.add(entry.getValue().getName());
-            }
+        for (UUID allyId : data.getFactionsWithRelation(faction.get().getId(), FactionRelation.ALLY)) {
+            data.getFaction(allyId).map(Faction::getName).ifPresent(allies::add);
+        }
+        for (UUID enemyId : data.getFactionsWithRelation(faction.get().getId(), FactionRelation.WAR)) {
+            data.getFaction(enemyId).map(Faction::getName).ifPresent(wars::add);
         }
         Optional<UUID> overlordId = data.getOverlord(faction.get().getId());
         String overlordName = overlordId.flatMap(data::getFaction).map(Faction::getName).orElse("None");
@@ -585,10 +593,9 @@ public final class FactionCommands {
         }
         UUID factionId = faction.get().getId();
         Set<ChunkPos> owned = new HashSet<>();
-        for (Map.Entry<Long, UUID> entry : data.getClaims().entrySet()) {
-            if (factionId.equals(entry.getValue())) {
-                owned.add(new ChunkPos(entry.getKey()));
-            }
+        LongIterator claimKeys = data.getClaimKeys(factionId).iterator();
+        while (claimKeys.hasNext()) {
+            owned.add(new ChunkPos(claimKeys.nextLong()));
         }
         if (owned.isEmpty()) {
             source.sendFailure(Component.literal("Your faction must have existing claims before using fill."));
@@ -632,7 +639,7 @@ public final class FactionCommands {
             source.sendFailure(Component.literal("No enclosed area found to fill."));
             return 0;
         }
-        int available = data.getMaxClaims(factionId) - data.getClaimCount(factionId);
+        int available = data.getMaxClaims(factionId) - data.getTotalClaimCount(factionId);
         if (fillTargets.size() > available) {
             source.sendFailure(Component.literal("Not enough claim power. Need " + fillTargets.size() + ", available " + available + "."));
             return 0;
@@ -790,29 +797,30 @@ public final class FactionCommands {
         FactionData data = FactionData.get(player.serverLevel());
         ChunkPos center = new ChunkPos(player.blockPosition());
         Optional<UUID> playerFaction = data.getFactionIdByPlayer(player.getUUID());
-        StringBuilder map = new StringBuilder("Chunk map (radius " + radius + "):");
-        for (int dz = -radius; dz <= radius; dz++) {
-            map.append("\n");
-            for (int dx = -radius; dx <= radius; dx++) {
-                ChunkPos pos = new ChunkPos(center.x + dx, center.z + dz);
-                char symbol = '.';
-                BlockPos blockPos = new BlockPos(pos.getMinBlockX(), player.blockPosition().getY(), pos.getMinBlockZ());
-                Optional<UUID> ownerId = data.getClaimOwner(blockPos);
-                if (ownerId.isPresent()) {
-                    if (playerFaction.isPresent() && ownerId.get().equals(playerFaction.get())) {
-                        symbol = 'O';
-                    } else if (playerFaction.isPresent()) {
-                        FactionRelation relation = data.getRelation(playerFaction.get(), ownerId.get());
-                        symbol = relation == FactionRelation.ALLY ? 'A' : relation == FactionRelation.WAR ? 'W' : 'N';
-                    } else {
-                        symbol = 'N';
-                    }
-                }
-                if (dx == 0 && dz == 0) {
-                    symbol = '*';
-                }
-                map.append(symbol);
+        int size = radius * 2 + 1;
+        char[] cells = new char[size * size];
+        Arrays.fill(cells, '.');
+        data.forEachClaimInRadius(center, radius, (chunkKey, kind, ownerId) -> {
+            if (kind == ClaimKind.PERSONAL) {
+                return;
+            }
+            char symbol;
+            if (playerFaction.isPresent() && ownerId.equals(playerFaction.get())) {
+                symbol = 'O';
+            } else if (playerFaction.isPresent()) {
+                FactionRelation relation = data.getRelation(playerFaction.get(), ownerId);
+                symbol = relation == FactionRelation.ALLY ? 'A' : relation == FactionRelation.WAR ? 'W' : 'N';
+            } else {
+                symbol = 'N';
             }
+            int dx = ChunkPos.getX(chunkKey) - center.x;
+            int dz = ChunkPos.getZ(chunkKey) - center.z;
+            cells[(dz + radius) * size + dx + radius] = symbol;
+        });
+        cells[radius * size + radius] = '*';
+        StringBuilder map = new StringBuilder("Chunk map (radius " + radius + "):");
+        for (int row = 0; row < size; row++) {
+            map.append("\n").append(cells, row * size, size);
         }
         map.append("\nLegend: * you, O owned, A ally, W war, N neutral, . unclaimed");
         source.sendSuccess(() -> Component.literal(map.toString()), false);
@@ -1177,24 +1185,21 @@ public final class FactionCommands {
             source.sendFailure(Component.literal("You lack permission to view access logs."));
             return 0;
         }
-        Deque<FactionAccessLog> logs = data.getAccessLogs(player.blockPosition());
-        if (logs.isEmpty()) {
-            source.sendSuccess(() -> Component.literal("No access logs for this claim."), false);
-            return 1;
-        }
         StringBuilder message = new StringBuilder("Access logs:");
-        for (FactionAccessLog log : logs) {
-            String timeAgo = formatTimeAgo(log.timestamp());
+        int count = data.forEachAccessLog(player.blockPosition(), (timestamp, playerName, action, allowed, blockName) ->
             message.append("\n")
-                .append(timeAgo)
+                .append(formatTimeAgo(timestamp))
                 .append(" | ")
-                .append(log.playerName())
+                .append(playerName)
                 .append(" | ")
-                .append(log.action())
+                .append(action)
                 .append(" | ")
-                .append(log.allowed() ? "allowed" : "denied")
+                .append(allowed ? "allowed" : "denied")
                 .append(" | ")
-                .append(log.blockName());
+                .append(blockName));
+        if (count == 0) {
+            source.sendSuccess(() -> Component.literal("No access logs for this claim."), false);
+            return 1;
         }
         source.sendSuccess(() -> Component.literal(message.toString()), false);
         return 1;
@@ -1323,7 +1328,7 @@ public final class FactionCommands {
             return 0;
         }
         if (owner.isPresent()) {
-            data.getClaims().remove(chunk.toLong());
+            data.forceUnclaimChunk(chunk);
         }
         if (!data.claimChunk(chunk, faction.get().getId())) {
             source.sendFailure(Component.literal("Unable to claim this chunk for " + faction.get().getName() + "."));
@@ -1355,6 +1360,198 @@ public final class FactionCommands {
         return 1;
     }
 
+    private static int adminCacheStats(CommandSourceStack source, boolean reset) {
+        long hits = PermissionDecisionCache.getHits();
+        long misses = PermissionDecisionCache.getMisses();
+        long total = hits + misses;
+        String hitRate = total == 0 ? "n/a" : String.format(Locale.ROOT, "%.1f%%", hits * 100.0 / total);
+        source.sendSuccess(() -> Component.literal("Permission cache: " + hits + " hits, " + misses + " misses (" + hitRate + " hit rate)"), false);
+        if (reset) {
+            PermissionDecisionCache.resetCounters();
+            source.sendSuccess(() -> Component.literal("Permission cache counters reset."), true);
+        }
+        return 1;
+    }
+
+    private static int adminAudit(CommandSourceStack source, String filters) {
+        MinecraftServer server = source.getServer();
+        UUID playerId = null;
+        String factionName = null;
+        String action = null;
+        long sinceMillis = 0L;
+        int page = 1;
+        for (String token : splitAuditFilters(filters)) {
+            int separator = token.indexOf(':');
+            if (separator <= 0) {
+                source.sendFailure(Component.literal(AUDIT_USAGE));
+                return 0;
+            }
+            String key = token.substring(0, separator).toLowerCase(Locale.ROOT);
+            String value = token.substring(separator + 1);
+            switch (key) {
+                case "player" -> {
+                    playerId = resolvePlayerId(server, value);
+                    if (playerId == null) {
+                        source.sendFailure(Component.literal("Unknown player: " + value));
+                        return 0;
+                    }
+                }
+                case "faction" -> factionName = value;
+                case "action" -> {
+                    try {
+                        action = FactionPermission.valueOf(value.toUpperCase(Locale.ROOT)).name();
+                    } catch (IllegalArgumentException ex) {
+                        source.sendFailure(Component.literal("Unknown action: " + value));
+                        return 0;
+                    }
+                }
+                case "since" -> {
+                    sinceMillis = parseDurationMillis(value);
+                    if (sinceMillis <= 0L) {
+                        source.sendFailure(Component.literal("Invalid duration: " + value));
+                        return 0;
+                    }
+                }
+                case "page" -> {
+                    try {
+                        page = Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        page = 0;
+                    }
+                    if (page < 1) {
+                        source.sendFailure(Component.literal("Invalid page: " + value));
+                        return 0;
+                    }
+                }
+                default -> {
+                    source.sendFailure(Component.literal(AUDIT_USAGE));
+                    return 0;
+                }
+            }
+        }
+        int levelCount = 0;
+        for (ServerLevel ignored : server.getAllLevels()) {
+            levelCount++;
+        }
+        long retained = (long) FactionConfig.SERVER.accessLogCapacity.get() * levelCount;
+        if ((long) (page - 1) * AUDIT_PAGE_SIZE >= retained) {
+            source.sendFailure(Component.literal("Invalid page: " + page + " (at most " + retained + " entries are kept)"));
+            return 0;
+        }
+        long fromMillis = sinceMillis > 0L ? System.currentTimeMillis() - sinceMillis : 0L;
+        int start = (page - 1) * AUDIT_PAGE_SIZE;
+        boolean factionFound = factionName == null;
+        java.util.List<AuditHit> hits = new java.util.ArrayList<>();
+        for (ServerLevel level : server.getAllLevels()) {
+            FactionData data = FactionData.get(level);
+            UUID factionId = null;
+            if (factionName != null) {
+                Optional<Faction> faction = data.findFactionByName(factionName);
+                if (faction.isEmpty()) {
+                    continue;
+                }
+                factionFound = true;
+                factionId = faction.get().getId();
+            }
+            FactionData.AccessLogQuery query = new FactionData.AccessLogQuery(playerId, factionId, action, fromMillis, Long.MAX_VALUE);
+            String dimension = level.dimension().location().toString();
+            for (FactionAccessLog log : data.queryAccessLogs(query, 0, start + AUDIT_PAGE_SIZE + 1)) {
+                hits.add(new AuditHit(dimension, log));
+            }
+        }
+        if (!factionFound) {
+            source.sendFailure(Component.literal("Faction not found."));
+            return 0;
+        }
+        hits.sort(Comparator.comparingLong((AuditHit hit) -> hit.log().timestamp()).reversed());
+        if (start >= hits.size()) {
+            source.sendSuccess(() -> Component.literal("No audit entries found."), false);
+            return 1;
+        }
+        int end = Math.min(hits.size(), start + AUDIT_PAGE_SIZE);
+        StringBuilder message = new StringBuilder("Audit results (page " + page + "):");
+        for (int i = start; i < end; i++) {
+            FactionAccessLog log = hits.get(i).log();
+            message.append("\n")
+                .append(formatTimeAgo(log.timestamp()))
+                .append(" | ")
+                .append(hits.get(i).dimension())
+                .append(" ")
+                .append(log.pos().getX()).append(" ").append(log.pos().getY()).append(" ").append(log.pos().getZ())
+                .append(" | ")
+                .append(log.playerName())
+                .append(" | ")
+                .append(log.action())
+                .append(" | ")
+                .append(log.allowed() ? "allowed" : "denied")
+                .append(" | ")
+                .append(log.blockName());
+        }
+        if (hits.size() > end) {
+            message.append("\nMore results: add page:").append(page + 1);
+        }
+        source.sendSuccess(() -> Component.literal(message.toString()), false);
+        return 1;
+    }
+
+    private static java.util.List<String> splitAuditFilters(String filters) {
+        java.util.List<String> tokens = new java.util.ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < filters.length(); i++) {
+            char c = filters.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (!current.isEmpty()) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                }
+            } else {
+                current.append(c);
+            }
+        }
+        if (!current.isEmpty()) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private static long parseDurationMillis(String value) {
+        if (value.length() < 2) {
+            return -1L;
+        }
+        long amount;
+        try {
+            amount = Long.parseLong(value.substring(0, value.length() - 1));
+        } catch (NumberFormatException ex) {
+            return -1L;
+        }
+        try {
+            return switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+                case 's' -> Duration.ofSeconds(amount).toMillis();
+                case 'm' -> Duration.ofMinutes(amount).toMillis();
+                case 'h' -> Duration.ofHours(amount).toMillis();
+                case 'd' -> Duration.ofDays(amount).toMillis();
+                default -> -1L;
+            };
+        } catch (ArithmeticException ex) {
+            return -1L;
+        }
+    }
+
+    private static UUID resolvePlayerId(MinecraftServer server, String name) {
+        try {
+            return UUID.fromString(name);
+        } catch (IllegalArgumentException ignored) {
+        }
+        ServerPlayer online = server.getPlayerList().getPlayerByName(name);
+        if (online != null) {
+            return online.getUUID();
+        }
+        return server.getProfileCache().get(name).map(profile -> profile.getId()).orElse(null);
+    }
+
     private static int adminRemovePersonalChunk(CommandSourceStack source) throws CommandSyntaxException {
         ServerPlayer player = source.getPlayerOrException();
         FactionData data = FactionData.get(player.serverLevel());
@@ -1523,7 +1720,7 @@ public final class FactionCommands {
             java.nio.file.Files.createDirectories(backupDir);
             var backupPath = backupDir.resolve(backupId);
             net.minecraft.nbt.NbtIo.writeCompressed(
-                data.save(new net.minecraft.nbt.CompoundTag(), level.registryAccess()),
+                data.saveAll(level.registryAccess()),
                 backupPath
             );
             source.sendSuccess(() -> Component.literal("Backup created: " + backupId), true);
@@ -1598,6 +1795,9 @@ public final class FactionCommands {
         return true;
     }
 
+    private record AuditHit(String dimension, FactionAccessLog log) {
+    }
+
     private static String formatTimeAgo(long timestamp) {
         Duration duration = Duration.between(Instant.ofEpochMilli(timestamp), Instant.now());
         long minutes = duration.toMinutes();
@@ -215,6 +215,9 @@ public final class FactionConfig {
         public final ModConfigSpec.ConfigValue<String> allyChatFormat;
         public final ModConfigSpec.ConfigValue<String> publicChatFormat;
         public final ModConfigSpec.ConfigValue<String> tabListFormat;
+        public final ModConfigSpec.ConfigValue<Boolean> asyncDataSaves;
+        public final ModConfigSpec.ConfigValue<Integer> journalSyncIntervalTicks;
+        public final ModConfigSpec.ConfigValue<Integer> accessLogCapacity;
         public final ModConfigSpec.ConfigValue<Integer> baseClaims;
         public final ModConfigSpec.ConfigValue<Integer> claimsPerMember;
         public final ModConfigSpec.ConfigValue<Integer> membersPerLevel;
@@ -229,6 +232,7 @@ public final class FactionConfig {
         public final ModConfigSpec.ConfigValue<Integer> inviteExpirationMinutes;
         public final ModConfigSpec.ConfigValue<Integer> autoClaimCooldownSeconds;
         public final ModConfigSpec.ConfigValue<Boolean> allowPvpInClaims;
+        public final ModConfigSpec.ConfigValue<Boolean> allowExplosionsInWarClaims;
         public final ModConfigSpec.ConfigValue<Boolean> allowRedstoneInClaims;
         public final ModConfigSpec.ConfigValue<Boolean> allowDoorUseInClaims;
         public final ModConfigSpec.ConfigValue<Boolean> trustedAllowBuild;
@@ -238,7 +242,7 @@ public final class FactionConfig {
         public final ModConfigSpec.ConfigValue<Integer> createMachineDetectionRadius;
         public final ModConfigSpec.ConfigValue<Boolean> strictNonPlayerMutationChecks;
         public final ModConfigSpec.ConfigValue<Boolean> enableMutationRestoreFallback;
-        public final ModConfigSpec.ConfigValue<Integer> mutationRestoreMaxPerTick;
+        public final ModConfigSpec.ConfigValue<Integer> mutationRestoreBudgetMicros;
         public final ModConfigSpec.ConfigValue<Boolean> enablePersonalClaims;
         public final ModConfigSpec.ConfigValue<Boolean> personalClaimsRequireFactionClaim;
         public final ModConfigSpec.ConfigValue<Boolean> personalClaimsUseFactionLevelLimit;
@@ -341,6 +345,9 @@ public final class FactionConfig {
             allowPvpInClaims = builder
                 .comment("Allow player-versus-player combat inside claimed chunks.")
                 .define("allowPvpInClaims", false);
+            allowExplosionsInWarClaims = builder
+                .comment("Allow explosions to break blocks in claims of factions that are currently at war.")
+                .define("allowExplosionsInWarClaims", false);
             allowRedstoneInClaims = builder
                 .comment("Allow redstone toggles by non-members when otherwise permitted.")
                 .define("allowRedstoneInClaims", true);
@@ -368,9 +375,9 @@ public final class FactionConfig {
             enableMutationRestoreFallback = builder
                 .comment("Enable deferred restoration fallback for denied non-player block mutations.")
                 .define("enableMutationRestoreFallback", true);
-            mutationRestoreMaxPerTick = builder
-                .comment("Maximum number of deferred block restorations applied per level each tick.")
-                .defineInRange("mutationRestoreMaxPerTick", 256, 1, 4096);
+            mutationRestoreBudgetMicros = builder
+                .comment("Time budget in microseconds for applying deferred block restorations each tick (at least one chunk section is always applied).")
+                .defineInRange("mutationRestoreBudgetMicros", 2000, 100, 50000);
             enablePersonalClaims = builder
                 .comment("Enable personal claim chunks.")
                 .define("enablePersonalClaims", true);
@@ -387,7 +394,7 @@ public final class FactionConfig {
                 .comment("Permission level required to bypass claim protections (default 2).")
                 .define("adminBypassPermissionLevel", 2);
             accessLogSize = builder
-                .comment("Number of access log entries to keep per claim.")
+                .comment("Number of access log entries shown per claim (older entries stay in the ring for audits).")
                 .define("accessLogSize", 20);
             dynmapFullSyncOnStart = builder
                 .comment("Run a full Dynmap claim sync on server start.")
@@ -432,6 +439,18 @@ public final class FactionConfig {
                 .comment("Format for player list (tab) names.")
                 .define("tabListFormat", "{faction_color}[{faction}]{reset} {player}");
             builder.pop();
+
+            builder.push("storage");
+            asyncDataSaves = builder
+                .comment("Encode and write faction data on a background thread during autosaves (shutdown saves are always synchronous).")
+                .define("asyncDataSaves", true);
+            journalSyncIntervalTicks = builder
+                .comment("Ticks between fsyncs of the claim and membership journal (lower is safer, higher is cheaper).")
+                .defineInRange("journalSyncIntervalTicks", 20, 1, 72000);
+            accessLogCapacity = builder
+                .comment("Total access log entries kept per dimension in the memory-mapped ring file (40 bytes each).")
+                .defineInRange("accessLogCapacity", 65536, 1024, 4194304);
+            builder.pop();
         }
     }
 }
@@ -0,0 +1,523 @@
+package com.mcprotector.data;
+
+import com.mcprotector.McProtectorMod;
+import com.mcprotector.config.FactionConfig;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+final class AccessLogStore {
+    private static final int MAGIC = 0x4D43414C;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 40;
+    private static final int SEQUENCE = 0;
+    private static final int TIMESTAMP = 8;
+    private static final int POSITION = 16;
+    private static final int PLAYER = 24;
+    private static final int ACTION = 28;
+    private static final int BLOCK = 32;
+    private static final int ALLOWED = 36;
+    private static final int V1_RECORD_BYTES = 64;
+    private static final byte DICT_STRING = 1;
+    private static final byte DICT_PLAYER = 2;
+    private static final long BUCKET_MILLIS = 60_000L;
+
+    private final Path dictionaryFile;
+    private final List<String> strings = new ArrayList<>();
+    private final Object2IntOpenHashMap<String> stringIds = new Object2IntOpenHashMap<>();
+    private final List<PlayerRef> players = new ArrayList<>();
+    private final Object2IntOpenHashMap<PlayerRef> playerIds = new Object2IntOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<SequenceQueue> chunkIndex = new Long2ObjectOpenHashMap<>();
+    private final Map<UUID, SequenceQueue> playerIndex = new HashMap<>();
+    private final SequenceQueue bucketIds = new SequenceQueue();
+    private final SequenceQueue bucketStarts = new SequenceQueue();
+    private FileChannel ringChannel;
+    private ByteBuffer ring;
+    private int capacity;
+    private long nextSequence = 1;
+    private DataOutputStream dictionaryOut;
+
+    private AccessLogStore(Path dictionaryFile) {
+        this.dictionaryFile = dictionaryFile;
+        stringIds.defaultReturnValue(-1);
+        playerIds.defaultReturnValue(-1);
+    }
+
+    static AccessLogStore open(Path directory) {
+        AccessLogStore store = new AccessLogStore(directory.resolve("dictionary.dat"));
+        int capacity = FactionConfig.SERVER.accessLogCapacity.get();
+        try {
+            Files.createDirectories(directory);
+            store.openDictionary();
+            store.openRing(directory.resolve("ring.dat"), capacity);
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to open access log store in {}; logs will not persist", directory, ex);
+            store.capacity = capacity;
+            store.ring = ByteBuffer.allocate(HEADER_BYTES + capacity * RECORD_BYTES);
+        }
+        store.rebuildIndex();
+        return store;
+    }
+
+    void append(long timestamp, UUID playerId, String playerName, long packedPos, String action, boolean allowed,
+                String blockName) {
+        int player = playerId(playerId, playerName);
+        int actionId = stringId(action);
+        int blockId = stringId(blockName);
+        long sequence = nextSequence++;
+        int offset = offset(sequence);
+        long replaced = ring.getLong(offset + SEQUENCE);
+        if (replaced != 0L) {
+            forget(replaced, offset);
+        }
+        ring.putLong(offset + TIMESTAMP, timestamp);
+        ring.putLong(offset + POSITION, packedPos);
+        ring.putInt(offset + PLAYER, player);
+        ring.putInt(offset + ACTION, actionId);
+        ring.putInt(offset + BLOCK, blockId);
+        ring.put(offset + ALLOWED, (byte) (allowed ? 1 : 0));
+        ring.putLong(offset + SEQUENCE, sequence);
+        index(sequence, offset);
+    }
+
+    Deque<FactionData.FactionAccessLog> get(long chunkKey) {
+        Deque<FactionData.FactionAccessLog> logs = new ArrayDeque<>();
+        forEach(chunkKey, (timestamp, playerId, playerName, packedPos, action, allowed, blockName) ->
+            logs.addLast(new FactionData.FactionAccessLog(timestamp, playerId, playerName, BlockPos.of(packedPos), action,
+                allowed, blockName)));
+        return logs;
+    }
+
+    int forEach(long chunkKey, Visitor visitor) {
+        SequenceQueue sequences = chunkIndex.get(chunkKey);
+        if (sequences == null) {
+            return 0;
+        }
+        int limit = perChunkLimit();
+        int visited = 0;
+        for (int i = sequences.size() - 1; i >= 0 && visited < limit; i--) {
+            visit(offset(sequences.get(i)), visitor);
+            visited++;
+        }
+        return visited;
+    }
+
+    List<FactionData.FactionAccessLog> query(UUID playerId, LongSet chunks, String action, long fromMillis,
+                                             long toMillis, int skip, int limit) {
+        List<FactionData.FactionAccessLog> results = new ArrayList<>();
+        int actionId = action == null ? -1 : stringIds.getInt(action);
+        if (action != null && actionId < 0 || limit <= 0) {
+            return results;
+        }
+        long start = firstSequenceFrom(fromMillis);
+        long end = firstSequenceAfter(toMillis);
+        if (start >= end) {
+            return results;
+        }
+        int[] skipped = {0};
+        Visitor collector = (timestamp, id, name, packedPos, actionName, allowed, blockName) -> {
+            if (skipped[0] < skip) {
+                skipped[0]++;
+                return;
+            }
+            results.add(new FactionData.FactionAccessLog(timestamp, id, name, BlockPos.of(packedPos), actionName,
+                allowed, blockName));
+        };
+        if (playerId != null) {
+            SequenceQueue sequences = playerIndex.get(playerId);
+            if (sequences == null) {
+                return results;
+            }
+            for (int i = sequences.lowerBound(end) - 1; i >= 0 && results.size() < limit; i--) {
+                long sequence = sequences.get(i);
+                if (sequence < start) {
+                    break;
+                }
+                visitIfMatches(sequence, null, chunks, actionId, fromMillis, toMillis, collector);
+            }
+        } else if (chunks != null) {
+            LongArrayList candidates = new LongArrayList();
+            LongIterator iterator = chunks.iterator();
+            while (iterator.hasNext()) {
+                SequenceQueue sequences = chunkIndex.get(iterator.nextLong());
+                if (sequences == null) {
+                    continue;
+                }
+                for (int i = sequences.lowerBound(start); i < sequences.size() && sequences.get(i) < end; i++) {
+                    candidates.add(sequences.get(i));
+                }
+            }
+            long[] ordered = candidates.toLongArray();
+            Arrays.sort(ordered);
+            for (int i = ordered.length - 1; i >= 0 && results.size() < limit; i--) {
+                visitIfMatches(ordered[i], null, null, actionId, fromMillis, toMillis, collector);
+            }
+        } else {
+            for (long sequence = end - 1; sequence >= start && results.size() < limit; sequence--) {
+                visitIfMatches(sequence, null, null, actionId, fromMillis, toMillis, collector);
+            }
+        }
+        return results;
+    }
+
+    LongSet chunks() {
+        return new LongOpenHashSet(chunkIndex.keySet());
+    }
+
+    boolean isEmpty() {
+        return bucketIds.isEmpty();
+    }
+
+    void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            ring.putLong(HEADER_BYTES + slot * RECORD_BYTES + SEQUENCE, 0L);
+        }
+        chunkIndex.clear();
+        playerIndex.clear();
+        while (!bucketIds.isEmpty()) {
+            bucketIds.removeFirst();
+            bucketStarts.removeFirst();
+        }
+    }
+
+    void close() {
+        if (ring instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+        try {
+            if (ringChannel != null) {
+                ringChannel.close();
+            }
+            if (dictionaryOut != null) {
+                dictionaryOut.close();
+            }
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to close access log store", ex);
+        }
+        ringChannel = null;
+        dictionaryOut = null;
+    }
+
+    private boolean isValid(int player, int action, int block) {
+        return player >= 0 && player < players.size()
+            && action >= 0 && action < strings.size()
+            && block >= 0 && block < strings.size();
+    }
+
+    private void visit(int offset, Visitor visitor) {
+        PlayerRef ref = players.get(ring.getInt(offset + PLAYER));
+        visitor.accept(ring.getLong(offset + TIMESTAMP), ref.id(), ref.name(), ring.getLong(offset + POSITION),
+            strings.get(ring.getInt(offset + ACTION)), ring.get(offset + ALLOWED) != 0,
+            strings.get(ring.getInt(offset + BLOCK)));
+    }
+
+    private void visitIfMatches(long sequence, UUID playerId, LongSet chunks, int actionId, long fromMillis,
+                                long toMillis, Visitor visitor) {
+        int offset = offset(sequence);
+        if (ring.getLong(offset + SEQUENCE) != sequence) {
+            return;
+        }
+        long timestamp = ring.getLong(offset + TIMESTAMP);
+        if (timestamp < fromMillis || timestamp > toMillis) {
+            return;
+        }
+        if (actionId >= 0 && ring.getInt(offset + ACTION) != actionId) {
+            return;
+        }
+        if (chunks != null && !chunks.contains(chunkKey(ring.getLong(offset + POSITION)))) {
+            return;
+        }
+        if (playerId != null && !players.get(ring.getInt(offset + PLAYER)).id().equals(playerId)) {
+            return;
+        }
+        visit(offset, visitor);
+    }
+
+    private long firstSequenceFrom(long fromMillis) {
+        long oldest = Math.max(1L, nextSequence - capacity);
+        int bucket = bucketIds.lowerBound(Math.floorDiv(fromMillis, BUCKET_MILLIS));
+        if (bucket == 0) {
+            return oldest;
+        }
+        if (bucket >= bucketIds.size()) {
+            return nextSequence;
+        }
+        return Math.max(oldest, bucketStarts.get(bucket));
+    }
+
+    private long firstSequenceAfter(long toMillis) {
+        if (toMillis == Long.MAX_VALUE) {
+            return nextSequence;
+        }
+        int bucket = bucketIds.lowerBound(Math.floorDiv(toMillis, BUCKET_MILLIS) + 1);
+        return bucket >= bucketIds.size() ? nextSequence : bucketStarts.get(bucket);
+    }
+
+    private void index(long sequence, int offset) {
+        chunkIndex.computeIfAbsent(chunkKey(ring.getLong(offset + POSITION)), key -> new SequenceQueue()).addLast(sequence);
+        UUID playerId = players.get(ring.getInt(offset + PLAYER)).id();
+        playerIndex.computeIfAbsent(playerId, key -> new SequenceQueue()).addLast(sequence);
+        long bucket = Math.floorDiv(ring.getLong(offset + TIMESTAMP), BUCKET_MILLIS);
+        if (bucketIds.isEmpty() || bucket > bucketIds.last()) {
+            bucketIds.addLast(bucket);
+            bucketStarts.addLast(sequence);
+        }
+    }
+
+    private void forget(long sequence, int offset) {
+        long chunkKey = chunkKey(ring.getLong(offset + POSITION));
+        SequenceQueue chunkSequences = chunkIndex.get(chunkKey);
+        if (chunkSequences != null && !chunkSequences.isEmpty() && chunkSequences.first() == sequence) {
+            chunkSequences.removeFirst();
+            if (chunkSequences.isEmpty()) {
+                chunkIndex.remove(chunkKey);
+            }
+        }
+        int player = ring.getInt(offset + PLAYER);
+        if (player >= 0 && player < players.size()) {
+            UUID playerId = players.get(player).id();
+            SequenceQueue playerSequences = playerIndex.get(playerId);
+            if (playerSequences != null && !playerSequences.isEmpty() && playerSequences.first() == sequence) {
+                playerSequences.removeFirst();
+                if (playerSequences.isEmpty()) {
+                    playerIndex.remove(playerId);
+                }
+            }
+        }
+        while (bucketStarts.size() > 1 && bucketStarts.get(1) <= sequence + 1) {
+            bucketIds.removeFirst();
+            bucketStarts.removeFirst();
+        }
+    }
+
+    private void rebuildIndex() {
+        long[] sequences = new long[capacity];
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = HEADER_BYTES + slot * RECORD_BYTES;
+            long sequence = ring.getLong(offset + SEQUENCE);
+            if (sequence <= 0L || offset(sequence) != offset) {
+                continue;
+            }
+            if (!isValid(ring.getInt(offset + PLAYER), ring.getInt(offset + ACTION), ring.getInt(offset + BLOCK))) {
+                ring.putLong(offset + SEQUENCE, 0L);
+                continue;
+            }
+            sequences[count++] = sequence;
+        }
+        Arrays.sort(sequences, 0, count);
+        for (int i = 0; i < count; i++) {
+            index(sequences[i], offset(sequences[i]));
+        }
+        nextSequence = count == 0 ? 1 : sequences[count - 1] + 1;
+    }
+
+    private void openRing(Path file, int requestedCapacity) throws IOException {
+        List<ByteBuffer> carried = List.of();
+        if (Files.exists(file)) {
+            try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                existing.read(header, 0);
+                header.flip();
+                int existingVersion = header.remaining() == HEADER_BYTES && header.getInt(0) == MAGIC ? header.getInt(4) : -1;
+                boolean valid = existingVersion == FORMAT_VERSION && header.getInt(12) == RECORD_BYTES
+                    || existingVersion == 1 && header.getInt(12) == V1_RECORD_BYTES;
+                int existingCapacity = valid ? header.getInt(8) : -1;
+                boolean current = valid && existingVersion == FORMAT_VERSION && existingCapacity == requestedCapacity;
+                if (valid && !current) {
+                    carried = readRecords(existing, existingCapacity, existingVersion);
+                }
+                if (!current) {
+                    McProtectorMod.LOGGER.info("Rebuilding access log ring {} with capacity {}", file, requestedCapacity);
+                } else {
+                    if (existing.size() < HEADER_BYTES + (long) requestedCapacity * RECORD_BYTES) {
+                        McProtectorMod.LOGGER.warn("Access log ring {} is truncated; extending it in place", file);
+                    }
+                    carried = null;
+                }
+            }
+            if (carried != null) {
+                Files.delete(file);
+            }
+        }
+        capacity = requestedCapacity;
+        ringChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ring = ringChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+        ring.putInt(0, MAGIC);
+        ring.putInt(4, FORMAT_VERSION);
+        ring.putInt(8, capacity);
+        ring.putInt(12, RECORD_BYTES);
+        if (carried != null) {
+            int skip = Math.max(0, carried.size() - capacity);
+            for (int i = skip; i < carried.size(); i++) {
+                ByteBuffer record = carried.get(i);
+                ring.put(offset(record.getLong(SEQUENCE)), record, 0, RECORD_BYTES);
+            }
+        }
+    }
+
+    private static List<ByteBuffer> readRecords(FileChannel channel, int existingCapacity, int existingVersion)
+        throws IOException {
+        int recordBytes = existingVersion == 1 ? V1_RECORD_BYTES : RECORD_BYTES;
+        List<ByteBuffer> records = new ArrayList<>();
+        for (int slot = 0; slot < existingCapacity; slot++) {
+            ByteBuffer record = ByteBuffer.allocate(recordBytes);
+            if (channel.read(record, HEADER_BYTES + (long) slot * recordBytes) < recordBytes) {
+                break;
+            }
+            if (record.getLong(SEQUENCE) > 0L) {
+                records.add(existingVersion == 1 ? upgradeV1(record) : record);
+            }
+        }
+        records.sort((left, right) -> Long.compare(left.getLong(SEQUENCE), right.getLong(SEQUENCE)));
+        return records;
+    }
+
+    private static ByteBuffer upgradeV1(ByteBuffer legacy) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putLong(SEQUENCE, legacy.getLong(0));
+        record.putLong(TIMESTAMP, legacy.getLong(8));
+        record.putLong(POSITION, BlockPos.asLong(legacy.getInt(36), legacy.getInt(40), legacy.getInt(44)));
+        record.putInt(PLAYER, legacy.getInt(24));
+        record.putInt(ACTION, legacy.getInt(28));
+        record.putInt(BLOCK, legacy.getInt(32));
+        record.put(ALLOWED, legacy.get(48));
+        return record;
+    }
+
+    private void openDictionary() throws IOException {
+        long validLength = 0;
+        if (Files.exists(dictionaryFile)) {
+            byte[] bytes = Files.readAllBytes(dictionaryFile);
+            ByteArrayInputStream source = new ByteArrayInputStream(bytes);
+            DataInputStream in = new DataInputStream(source);
+            try {
+                while (source.available() > 0) {
+                    byte type = in.readByte();
+                    if (type == DICT_STRING) {
+                        registerString(in.readUTF());
+                    } else if (type == DICT_PLAYER) {
+                        UUID id = new UUID(in.readLong(), in.readLong());
+                        registerPlayer(new PlayerRef(id, in.readUTF()));
+                    } else {
+                        break;
+                    }
+                    validLength = bytes.length - source.available();
+                }
+            } catch (EOFException ex) {
+                McProtectorMod.LOGGER.warn("Access log dictionary {} ends with a truncated entry", dictionaryFile);
+            }
+            if (validLength < bytes.length) {
+                try (FileChannel channel = FileChannel.open(dictionaryFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+        }
+        dictionaryOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dictionaryFile,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+    }
+
+    private int stringId(String value) {
+        String key = value == null ? "" : value;
+        int id = stringIds.getInt(key);
+        if (id >= 0) {
+            return id;
+        }
+        id = registerString(key);
+        if (dictionaryOut != null) {
+            try {
+                dictionaryOut.writeByte(DICT_STRING);
+                dictionaryOut.writeUTF(key);
+                dictionaryOut.flush();
+            } catch (IOException ex) {
+                McProtectorMod.LOGGER.error("Failed to append to access log dictionary {}", dictionaryFile, ex);
+            }
+        }
+        return id;
+    }
+
+    private int playerId(UUID playerId, String playerName) {
+        PlayerRef ref = new PlayerRef(playerId, playerName == null ? "" : playerName);
+        int id = playerIds.getInt(ref);
+        if (id >= 0) {
+            return id;
+        }
+        id = registerPlayer(ref);
+        if (dictionaryOut != null) {
+            try {
+                dictionaryOut.writeByte(DICT_PLAYER);
+                dictionaryOut.writeLong(playerId.getMostSignificantBits());
+                dictionaryOut.writeLong(playerId.getLeastSignificantBits());
+                dictionaryOut.writeUTF(ref.name());
+                dictionaryOut.flush();
+            } catch (IOException ex) {
+                McProtectorMod.LOGGER.error("Failed to append to access log dictionary {}", dictionaryFile, ex);
+            }
+        }
+        return id;
+    }
+
+    private int registerString(String value) {
+        int id = strings.size();
+        strings.add(value);
+        stringIds.put(value, id);
+        return id;
+    }
+
+    private int registerPlayer(PlayerRef ref) {
+        int id = players.size();
+        players.add(ref);
+        playerIds.put(ref, id);
+        return id;
+    }
+
+    private int offset(long sequence) {
+        return HEADER_BYTES + (int) ((sequence - 1) % capacity) * RECORD_BYTES;
+    }
+
+    private static long chunkKey(long packedPos) {
+        return ChunkPos.asLong(SectionPos.blockToSectionCoord(BlockPos.getX(packedPos)),
+            SectionPos.blockToSectionCoord(BlockPos.getZ(packedPos)));
+    }
+
+    private static int perChunkLimit() {
+        return Math.max(1, FactionConfig.SERVER.accessLogSize.get());
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long timestamp, UUID playerId, String playerName, long packedPos, String action, boolean allowed,
+                    String blockName);
+    }
+
+    private record PlayerRef(UUID id, String name) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.mcprotector.data;
+
+import com.mcprotector.McProtectorMod;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.ByteArrayTag;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.IntArrayTag;
+import net.minecraft.nbt.LongArrayTag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+final class ClaimColumns {
+    static final String PALETTE = "ClaimPalette";
+    static final String CHUNKS = "ClaimChunks";
+    static final String OWNERS = "ClaimOwners";
+    static final String KINDS = "ClaimKinds";
+    private static final ClaimKind[] KIND_VALUES = ClaimKind.values();
+
+    private final Object2IntOpenHashMap<UUID> paletteIndex = new Object2IntOpenHashMap<>();
+    private final List<UUID> palette = new ArrayList<>();
+    private final LongArrayList chunks = new LongArrayList();
+    private final IntArrayList owners = new IntArrayList();
+    private final ByteArrayList kinds = new ByteArrayList();
+
+    ClaimColumns() {
+        paletteIndex.defaultReturnValue(-1);
+    }
+
+    void add(long chunkKey, ClaimKind kind, UUID owner) {
+        int index = paletteIndex.getInt(owner);
+        if (index < 0) {
+            index = palette.size();
+            palette.add(owner);
+            paletteIndex.put(owner, index);
+        }
+        chunks.add(chunkKey);
+        owners.add(index);
+        kinds.add((byte) kind.ordinal());
+    }
+
+    boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    void writeTo(CompoundTag tag) {
+        long[] paletteBits = new long[palette.size() * 2];
+        for (int i = 0; i < palette.size(); i++) {
+            UUID owner = palette.get(i);
+            paletteBits[i * 2] = owner.getMostSignificantBits();
+            paletteBits[i * 2 + 1] = owner.getLeastSignificantBits();
+        }
+        tag.put(PALETTE, new LongArrayTag(paletteBits));
+        tag.put(CHUNKS, new LongArrayTag(chunks.toLongArray()));
+        tag.put(OWNERS, new IntArrayTag(owners.toIntArray()));
+        tag.put(KINDS, new ByteArrayTag(kinds.toByteArray()));
+    }
+
+    static void read(CompoundTag tag, Reader reader) {
+        long[] paletteBits = tag.getLongArray(PALETTE);
+        long[] chunks = tag.getLongArray(CHUNKS);
+        int[] owners = tag.getIntArray(OWNERS);
+        byte[] kinds = tag.getByteArray(KINDS);
+        if (chunks.length != owners.length || chunks.length != kinds.length) {
+            McProtectorMod.LOGGER.warn("Claim columns have mismatched lengths ({}, {}, {}); reading common prefix",
+                chunks.length, owners.length, kinds.length);
+        }
+        UUID[] palette = new UUID[paletteBits.length / 2];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = new UUID(paletteBits[i * 2], paletteBits[i * 2 + 1]);
+        }
+        int count = Math.min(chunks.length, Math.min(owners.length, kinds.length));
+        for (int i = 0; i < count; i++) {
+            int owner = owners[i];
+            int kind = kinds[i];
+            if (owner < 0 || owner >= palette.length || kind < 0 || kind >= KIND_VALUES.length) {
+                continue;
+            }
+            reader.accept(chunks[i], KIND_VALUES[kind], palette[owner]);
+        }
+    }
+
+    @FunctionalInterface
+    interface Reader {
+        void accept(long chunkKey, ClaimKind kind, UUID owner);
+    }
+}
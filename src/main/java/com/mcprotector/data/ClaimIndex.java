@@ -0,0 +1,274 @@
+package com.mcprotector.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+final class ClaimIndex {
+    static final int EMPTY = 0;
+    private static final int KIND_SHIFT = 30;
+    private static final int HANDLE_MASK = (1 << KIND_SHIFT) - 1;
+    private static final ClaimKind[] KINDS = ClaimKind.values();
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private final int[] kindCounts = new int[KINDS.length];
+
+    ClaimIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    static int pack(ClaimKind kind, int handle) {
+        if (handle < 0 || handle > HANDLE_MASK) {
+            throw new IllegalArgumentException("Claim owner handle out of range: " + handle);
+        }
+        return ((kind.ordinal() + 1) << KIND_SHIFT) | handle;
+    }
+
+    static ClaimKind kindOf(int packed) {
+        return packed == EMPTY ? null : KINDS[(packed >>> KIND_SHIFT) - 1];
+    }
+
+    static int handleOf(int packed) {
+        return packed & HANDLE_MASK;
+    }
+
+    static boolean isKind(int packed, ClaimKind kind) {
+        return packed != EMPTY && (packed >>> KIND_SHIFT) - 1 == kind.ordinal();
+    }
+
+    int get(long key) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        int slot = slot(key);
+        while (true) {
+            int value = values[slot];
+            if (value == EMPTY) {
+                return EMPTY;
+            }
+            if (keys[slot] == key) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    boolean contains(long key) {
+        return get(key) != EMPTY;
+    }
+
+    int put(long key, int packed) {
+        if (packed == EMPTY) {
+            return remove(key);
+        }
+        int slot = slot(key);
+        while (values[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = packed;
+                kindCounts[(previous >>> KIND_SHIFT) - 1]--;
+                kindCounts[(packed >>> KIND_SHIFT) - 1]++;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = packed;
+        kindCounts[(packed >>> KIND_SHIFT) - 1]++;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return EMPTY;
+    }
+
+    int remove(long key) {
+        int slot = slot(key);
+        while (true) {
+            int value = values[slot];
+            if (value == EMPTY) {
+                return EMPTY;
+            }
+            if (keys[slot] == key) {
+                kindCounts[(value >>> KIND_SHIFT) - 1]--;
+                size--;
+                shiftKeys(slot);
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int size(ClaimKind kind) {
+        return kindCounts[kind.ordinal()];
+    }
+
+    void clear() {
+        Arrays.fill(values, EMPTY);
+        Arrays.fill(kindCounts, 0);
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != EMPTY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    Map<Long, UUID> view(ClaimKind kind, IntFunction<UUID> resolver) {
+        return new KindView(kind, resolver);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+
+    private void shiftKeys(int pos) {
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            while (true) {
+                if (values[pos] == EMPTY) {
+                    values[last] = EMPTY;
+                    return;
+                }
+                int home = slot(keys[pos]);
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = keys[pos];
+            values[last] = values[pos];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * 0.75f);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            int value = oldValues[i];
+            if (value == EMPTY) {
+                continue;
+            }
+            int slot = slot(oldKeys[i]);
+            while (values[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = value;
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, int packed);
+    }
+
+    private final class KindView extends AbstractMap<Long, UUID> {
+        private final ClaimKind kind;
+        private final IntFunction<UUID> resolver;
+
+        private KindView(ClaimKind kind, IntFunction<UUID> resolver) {
+            this.kind = kind;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public UUID get(Object key) {
+            if (!(key instanceof Long chunkKey)) {
+                return null;
+            }
+            int packed = ClaimIndex.this.get(chunkKey);
+            return isKind(packed, kind) ? resolver.apply(handleOf(packed)) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Long chunkKey && isKind(ClaimIndex.this.get(chunkKey), kind);
+        }
+
+        @Override
+        public int size() {
+            return ClaimIndex.this.size(kind);
+        }
+
+        @Override
+        public Set<Entry<Long, UUID>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Long, UUID>> iterator() {
+                    return new KindIterator(kind, resolver);
+                }
+
+                @Override
+                public int size() {
+                    return ClaimIndex.this.size(kind);
+                }
+            };
+        }
+    }
+
+    private final class KindIterator implements Iterator<Map.Entry<Long, UUID>> {
+        private final ClaimKind kind;
+        private final IntFunction<UUID> resolver;
+        private final long[] keys = ClaimIndex.this.keys;
+        private final int[] values = ClaimIndex.this.values;
+        private int next = -1;
+
+        private KindIterator(ClaimKind kind, IntFunction<UUID> resolver) {
+            this.kind = kind;
+            this.resolver = resolver;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public Map.Entry<Long, UUID> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int slot = next;
+            advance();
+            return Map.entry(keys[slot], resolver.apply(handleOf(values[slot])));
+        }
+
+        private void advance() {
+            next++;
+            while (next < values.length && !isKind(values[next], kind)) {
+                next++;
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.mcprotector.data;
+
+import com.mcprotector.McProtectorMod;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+final class ClaimJournal {
+    private static final String FILE_SUFFIX = ".wal";
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_RECORD_BYTES = BUFFER_BYTES - HEADER_BYTES;
+    private static final int MAX_STRING_BYTES = 1024;
+    private static final byte CLAIM_PUT = 1;
+    private static final byte CLAIM_REMOVE = 2;
+    private static final byte MEMBER_SET = 3;
+    private static final byte MEMBER_REMOVE = 4;
+    private static final byte FACTION_CREATE = 5;
+    private static final byte FACTION_RENAME = 6;
+    private static final byte FACTION_DISBAND = 7;
+    private static final byte RELATION_SET = 8;
+    private static final byte FACTION_STATE = 9;
+    private static final byte CLAIM_BOOST = 10;
+    private static final byte HOME_SET = 11;
+    private static final byte VASSAL_CONTRACT = 12;
+    private static final byte VASSAL_BREAKAWAY = 13;
+    private static final byte WAR_STATE = 14;
+    private static final UUID NONE = new UUID(0L, 0L);
+    private static final ClaimKind[] KINDS = ClaimKind.values();
+    private static final FactionRelation[] RELATIONS = FactionRelation.values();
+
+    private final Path directory;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+    private long segment;
+    private boolean unsynced;
+    private boolean closed;
+    private FileChannel channel;
+    private long channelSegment;
+
+    private ClaimJournal(Path directory, long segment) {
+        this.directory = directory;
+        this.segment = segment;
+    }
+
+    static ClaimJournal open(Path directory, Replayer replayer) {
+        long lastSegment = 0;
+        for (long existing : listSegments(directory)) {
+            replay(segmentFile(directory, existing), replayer);
+            lastSegment = existing;
+        }
+        return new ClaimJournal(directory, lastSegment + 1);
+    }
+
+    void claimPut(long chunkKey, ClaimKind kind, UUID owner) {
+        record.clear();
+        record.put(CLAIM_PUT).putLong(chunkKey).put((byte) kind.ordinal());
+        putUuid(owner);
+        append();
+    }
+
+    void claimRemove(long chunkKey) {
+        record.clear();
+        record.put(CLAIM_REMOVE).putLong(chunkKey);
+        append();
+    }
+
+    void memberSet(UUID factionId, UUID playerId, String role) {
+        record.clear();
+        record.put(MEMBER_SET);
+        putUuid(factionId);
+        putUuid(playerId);
+        putString(role);
+        append();
+    }
+
+    void memberRemove(UUID playerId) {
+        record.clear();
+        record.put(MEMBER_REMOVE);
+        putUuid(playerId);
+        append();
+    }
+
+    void factionCreate(UUID factionId, String name, UUID ownerId) {
+        record.clear();
+        record.put(FACTION_CREATE);
+        putUuid(factionId);
+        putUuid(ownerId);
+        putString(name);
+        append();
+    }
+
+    void factionRename(UUID factionId, String name) {
+        record.clear();
+        record.put(FACTION_RENAME);
+        putUuid(factionId);
+        putString(name);
+        append();
+    }
+
+    void factionDisband(UUID factionId) {
+        record.clear();
+        record.put(FACTION_DISBAND);
+        putUuid(factionId);
+        append();
+    }
+
+    void relationSet(UUID source, UUID target, FactionRelation relation) {
+        record.clear();
+        record.put(RELATION_SET);
+        putUuid(source);
+        putUuid(target);
+        record.put((byte) (relation == null ? -1 : relation.ordinal()));
+        append();
+    }
+
+    void factionState(UUID factionId, byte[] state) {
+        if (state.length > MAX_RECORD_BYTES - 2 * Long.BYTES - Integer.BYTES - 1) {
+            McProtectorMod.LOGGER.warn("Faction {} state is too large for the claim journal; relying on the next save", factionId);
+            return;
+        }
+        record.clear();
+        record.put(FACTION_STATE);
+        putUuid(factionId);
+        record.putInt(state.length).put(state);
+        append();
+    }
+
+    void claimBoost(UUID factionId, int boost) {
+        record.clear();
+        record.put(CLAIM_BOOST);
+        putUuid(factionId);
+        record.putInt(boost);
+        append();
+    }
+
+    void homeSet(UUID factionId, String dimension, long pos) {
+        record.clear();
+        record.put(HOME_SET);
+        putUuid(factionId);
+        putString(dimension);
+        record.putLong(pos);
+        append();
+    }
+
+    void vassalContract(UUID vassalId, UUID overlordId, long startedAt) {
+        record.clear();
+        record.put(VASSAL_CONTRACT);
+        putUuid(vassalId);
+        putUuid(overlordId == null ? NONE : overlordId);
+        record.putLong(startedAt);
+        append();
+    }
+
+    void vassalBreakaway(UUID vassalId, UUID overlordId, int requiredClaims, int capturedClaims, long startedAt) {
+        record.clear();
+        record.put(VASSAL_BREAKAWAY);
+        putUuid(vassalId);
+        putUuid(overlordId == null ? NONE : overlordId);
+        record.putInt(requiredClaims).putInt(capturedClaims).putLong(startedAt);
+        append();
+    }
+
+    void warState(UUID first, UUID second, Long declaredAt, UUID declaredBy) {
+        record.clear();
+        record.put(WAR_STATE);
+        putUuid(first);
+        putUuid(second);
+        record.putLong(declaredAt == null ? -1L : declaredAt);
+        putUuid(declaredBy == null ? NONE : declaredBy);
+        append();
+    }
+
+    void sync() {
+        if (!unsynced || closed) {
+            return;
+        }
+        handOff(true, false);
+        unsynced = false;
+    }
+
+    long rotate() {
+        long current = segment;
+        if (!closed) {
+            handOff(unsynced, true);
+            unsynced = false;
+        }
+        segment++;
+        return current;
+    }
+
+    void discardThrough(long lastSegment) {
+        for (long existing : listSegments(directory)) {
+            if (existing > lastSegment) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(segmentFile(directory, existing));
+            } catch (IOException ex) {
+                McProtectorMod.LOGGER.error("Failed to delete claim journal segment {}", existing, ex);
+            }
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        handOff(unsynced, true);
+        unsynced = false;
+        closed = true;
+    }
+
+    private void append() {
+        if (closed) {
+            return;
+        }
+        record.flip();
+        crc.reset();
+        crc.update(record.duplicate());
+        if (buffer.remaining() < HEADER_BYTES + record.remaining()) {
+            handOff(false, false);
+        }
+        buffer.putInt(record.remaining()).putInt((int) crc.getValue()).put(record);
+        unsynced = true;
+    }
+
+    private void handOff(boolean force, boolean closeSegment) {
+        buffer.flip();
+        ByteBuffer pending = ByteBuffer.allocate(buffer.remaining());
+        pending.put(buffer).flip();
+        buffer.clear();
+        long targetSegment = segment;
+        DataSaveExecutor.execute(() -> writeOut(targetSegment, pending, force, closeSegment));
+    }
+
+    private void writeOut(long targetSegment, ByteBuffer pending, boolean force, boolean closeSegment) {
+        try {
+            if (pending.hasRemaining() || force) {
+                FileChannel target = channelFor(targetSegment);
+                while (pending.hasRemaining()) {
+                    target.write(pending);
+                }
+                if (force) {
+                    target.force(false);
+                }
+            }
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to write claim journal segment {}", targetSegment, ex);
+        }
+        if (closeSegment) {
+            closeChannel();
+        }
+    }
+
+    private FileChannel channelFor(long targetSegment) throws IOException {
+        if (channel != null && channelSegment == targetSegment) {
+            return channel;
+        }
+        closeChannel();
+        Files.createDirectories(directory);
+        channel = FileChannel.open(segmentFile(directory, targetSegment), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        channelSegment = targetSegment;
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to close claim journal segment {}", channelSegment, ex);
+        }
+        channel = null;
+    }
+
+    private void putUuid(UUID id) {
+        record.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_STRING_BYTES);
+        record.putShort((short) length).put(bytes, 0, length);
+    }
+
+    private static void replay(Path file, Replayer replayer) {
+        ByteBuffer data;
+        try {
+            data = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to read claim journal {}", file, ex);
+            return;
+        }
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= HEADER_BYTES) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || length > data.remaining()) {
+                McProtectorMod.LOGGER.warn("Claim journal {} ends with a truncated record", file);
+                return;
+            }
+            ByteBuffer entry = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            crc.reset();
+            crc.update(entry.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                McProtectorMod.LOGGER.warn("Claim journal {} has a corrupt record; ignoring the remainder", file);
+                return;
+            }
+            try {
+                apply(entry, replayer);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+                McProtectorMod.LOGGER.warn("Skipping malformed claim journal record in {}", file);
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer entry, Replayer replayer) {
+        switch (entry.get()) {
+            case CLAIM_PUT -> {
+                long chunkKey = entry.getLong();
+                ClaimKind kind = KINDS[entry.get()];
+                replayer.claimPut(chunkKey, kind, getUuid(entry));
+            }
+            case CLAIM_REMOVE -> replayer.claimRemove(entry.getLong());
+            case MEMBER_SET -> replayer.memberSet(getUuid(entry), getUuid(entry), getString(entry));
+            case MEMBER_REMOVE -> replayer.memberRemove(getUuid(entry));
+            case FACTION_CREATE -> {
+                UUID factionId = getUuid(entry);
+                UUID ownerId = getUuid(entry);
+                replayer.factionCreate(factionId, getString(entry), ownerId);
+            }
+            case FACTION_RENAME -> replayer.factionRename(getUuid(entry), getString(entry));
+            case FACTION_DISBAND -> replayer.factionDisband(getUuid(entry));
+            case RELATION_SET -> {
+                UUID source = getUuid(entry);
+                UUID target = getUuid(entry);
+                int relation = entry.get();
+                replayer.relationSet(source, target, relation < 0 ? null : RELATIONS[relation]);
+            }
+            case FACTION_STATE -> {
+                UUID factionId = getUuid(entry);
+                byte[] state = new byte[entry.getInt()];
+                entry.get(state);
+                replayer.factionState(factionId, state);
+            }
+            case CLAIM_BOOST -> replayer.claimBoost(getUuid(entry), entry.getInt());
+            case HOME_SET -> {
+                UUID factionId = getUuid(entry);
+                String dimension = getString(entry);
+                replayer.homeSet(factionId, dimension, entry.getLong());
+            }
+            case VASSAL_CONTRACT -> {
+                UUID vassalId = getUuid(entry);
+                UUID overlordId = getUuid(entry);
+                replayer.vassalContract(vassalId, NONE.equals(overlordId) ? null : overlordId, entry.getLong());
+            }
+            case VASSAL_BREAKAWAY -> {
+                UUID vassalId = getUuid(entry);
+                UUID overlordId = getUuid(entry);
+                int requiredClaims = entry.getInt();
+                int capturedClaims = entry.getInt();
+                replayer.vassalBreakaway(vassalId, NONE.equals(overlordId) ? null : overlordId, requiredClaims,
+                    capturedClaims, entry.getLong());
+            }
+            case WAR_STATE -> {
+                UUID first = getUuid(entry);
+                UUID second = getUuid(entry);
+                long declaredAt = entry.getLong();
+                UUID declaredBy = getUuid(entry);
+                replayer.warState(first, second, declaredAt < 0 ? null : declaredAt, NONE.equals(declaredBy) ? null : declaredBy);
+            }
+            default -> throw new IllegalArgumentException("Unknown claim journal record");
+        }
+    }
+
+    private static UUID getUuid(ByteBuffer entry) {
+        return new UUID(entry.getLong(), entry.getLong());
+    }
+
+    private static String getString(ByteBuffer entry) {
+        byte[] bytes = new byte[entry.getShort() & 0xFFFF];
+        entry.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<Long> listSegments(Path directory) {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to list claim journal segments in {}", directory, ex);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(segment + FILE_SUFFIX);
+    }
+
+    interface Replayer {
+        void claimPut(long chunkKey, ClaimKind kind, UUID owner);
+
+        void claimRemove(long chunkKey);
+
+        void memberSet(UUID factionId, UUID playerId, String role);
+
+        void memberRemove(UUID playerId);
+
+        void factionCreate(UUID factionId, String name, UUID ownerId);
+
+        void factionRename(UUID factionId, String name);
+
+        void factionDisband(UUID factionId);
+
+        void relationSet(UUID source, UUID target, FactionRelation relation);
+
+        void factionState(UUID factionId, byte[] state);
+
+        void claimBoost(UUID factionId, int boost);
+
+        void homeSet(UUID factionId, String dimension, long pos);
+
+        void vassalContract(UUID vassalId, UUID overlordId, long startedAt);
+
+        void vassalBreakaway(UUID vassalId, UUID overlordId, int requiredClaims, int capturedClaims, long startedAt);
+
+        void warState(UUID first, UUID second, Long declaredAt, UUID declaredBy);
+    }
+}
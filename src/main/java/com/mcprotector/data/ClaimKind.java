@@ -0,0 +1,7 @@
+package com.mcprotector.data;
+
+public enum ClaimKind {
+    FACTION,
+    SAFE_ZONE,
+    PERSONAL
+}
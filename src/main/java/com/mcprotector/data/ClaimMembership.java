@@ -0,0 +1,68 @@
+package com.mcprotector.data;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class ClaimMembership {
+    private final List<List<LongOpenHashSet>> byKind = new ArrayList<>();
+
+    ClaimMembership() {
+        for (int i = 0; i < ClaimKind.values().length; i++) {
+            byKind.add(new ArrayList<>());
+        }
+    }
+
+    void add(int packed, long key) {
+        List<LongOpenHashSet> sets = byKind.get(ClaimIndex.kindOf(packed).ordinal());
+        int handle = ClaimIndex.handleOf(packed);
+        while (sets.size() <= handle) {
+            sets.add(null);
+        }
+        LongOpenHashSet set = sets.get(handle);
+        if (set == null) {
+            set = new LongOpenHashSet();
+            sets.set(handle, set);
+        }
+        set.add(key);
+    }
+
+    void remove(int packed, long key) {
+        LongOpenHashSet set = find(ClaimIndex.kindOf(packed), ClaimIndex.handleOf(packed));
+        if (set != null) {
+            set.remove(key);
+        }
+    }
+
+    int count(ClaimKind kind, int handle) {
+        LongOpenHashSet set = find(kind, handle);
+        return set == null ? 0 : set.size();
+    }
+
+    LongSet keys(ClaimKind kind, int handle) {
+        LongOpenHashSet set = find(kind, handle);
+        return set == null ? LongSets.EMPTY_SET : LongSets.unmodifiable(set);
+    }
+
+    long[] copyKeys(ClaimKind kind, int handle) {
+        LongOpenHashSet set = find(kind, handle);
+        return set == null ? new long[0] : set.toLongArray();
+    }
+
+    void clear() {
+        for (List<LongOpenHashSet> sets : byKind) {
+            sets.clear();
+        }
+    }
+
+    private LongOpenHashSet find(ClaimKind kind, int handle) {
+        if (handle == HandleRegistry.NO_HANDLE) {
+            return null;
+        }
+        List<LongOpenHashSet> sets = byKind.get(kind.ordinal());
+        return handle < sets.size() ? sets.get(handle) : null;
+    }
+}
@@ -0,0 +1,145 @@
+package com.mcprotector.data;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+final class ClaimPresence {
+    private static final int BUCKET_BITS = 14;
+    private static final int BUCKETS = 1 << BUCKET_BITS;
+    private static final int MASK_WORDS = (ClaimShardStore.REGION_SIZE * ClaimShardStore.REGION_SIZE) >>> 6;
+    private static final int LOCAL_MASK = ClaimShardStore.REGION_SIZE - 1;
+
+    private final long[] occupied = new long[BUCKETS >>> 6];
+    private final int[] regionsPerBucket = new int[BUCKETS];
+    private final Long2ObjectOpenHashMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+
+    boolean mayContain(int chunkX, int chunkZ) {
+        int bucket = bucket(chunkX >> ClaimShardStore.REGION_SHIFT, chunkZ >> ClaimShardStore.REGION_SHIFT);
+        return (occupied[bucket >>> 6] & (1L << bucket)) != 0L;
+    }
+
+    boolean contains(int chunkX, int chunkZ) {
+        if (!mayContain(chunkX, chunkZ)) {
+            return false;
+        }
+        long[] mask = regions.get(regionKey(chunkX, chunkZ));
+        if (mask == null) {
+            return false;
+        }
+        int bit = bit(chunkX, chunkZ);
+        return (mask[bit >>> 6] & (1L << bit)) != 0L;
+    }
+
+    void add(long chunkKey) {
+        int chunkX = ChunkPos.getX(chunkKey);
+        int chunkZ = ChunkPos.getZ(chunkKey);
+        long regionKey = regionKey(chunkX, chunkZ);
+        long[] mask = regions.get(regionKey);
+        if (mask == null) {
+            mask = new long[MASK_WORDS];
+            regions.put(regionKey, mask);
+            int bucket = bucket(chunkX >> ClaimShardStore.REGION_SHIFT, chunkZ >> ClaimShardStore.REGION_SHIFT);
+            if (regionsPerBucket[bucket]++ == 0) {
+                occupied[bucket >>> 6] |= 1L << bucket;
+            }
+        }
+        int bit = bit(chunkX, chunkZ);
+        mask[bit >>> 6] |= 1L << bit;
+    }
+
+    void remove(long chunkKey) {
+        int chunkX = ChunkPos.getX(chunkKey);
+        int chunkZ = ChunkPos.getZ(chunkKey);
+        long regionKey = regionKey(chunkX, chunkZ);
+        long[] mask = regions.get(regionKey);
+        if (mask == null) {
+            return;
+        }
+        int bit = bit(chunkX, chunkZ);
+        mask[bit >>> 6] &= ~(1L << bit);
+        for (long word : mask) {
+            if (word != 0L) {
+                return;
+            }
+        }
+        regions.remove(regionKey);
+        int bucket = bucket(chunkX >> ClaimShardStore.REGION_SHIFT, chunkZ >> ClaimShardStore.REGION_SHIFT);
+        if (--regionsPerBucket[bucket] == 0) {
+            occupied[bucket >>> 6] &= ~(1L << bucket);
+        }
+    }
+
+    void forEachInArea(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, LongConsumer consumer) {
+        if (minChunkX > maxChunkX || minChunkZ > maxChunkZ) {
+            return;
+        }
+        int minRegionX = minChunkX >> ClaimShardStore.REGION_SHIFT;
+        int minRegionZ = minChunkZ >> ClaimShardStore.REGION_SHIFT;
+        int maxRegionX = maxChunkX >> ClaimShardStore.REGION_SHIFT;
+        int maxRegionZ = maxChunkZ >> ClaimShardStore.REGION_SHIFT;
+        long span = ((long) maxRegionX - minRegionX + 1) * ((long) maxRegionZ - minRegionZ + 1);
+        if (span > regions.size()) {
+            for (Long2ObjectMap.Entry<long[]> entry : regions.long2ObjectEntrySet()) {
+                int regionX = ChunkPos.getX(entry.getLongKey());
+                int regionZ = ChunkPos.getZ(entry.getLongKey());
+                if (regionX >= minRegionX && regionX <= maxRegionX && regionZ >= minRegionZ && regionZ <= maxRegionZ) {
+                    visitRegion(regionX, regionZ, entry.getValue(), minChunkX, minChunkZ, maxChunkX, maxChunkZ, consumer);
+                }
+            }
+            return;
+        }
+        for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+            for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+                int bucket = bucket(regionX, regionZ);
+                if ((occupied[bucket >>> 6] & (1L << bucket)) == 0L) {
+                    continue;
+                }
+                long[] mask = regions.get(ChunkPos.asLong(regionX, regionZ));
+                if (mask != null) {
+                    visitRegion(regionX, regionZ, mask, minChunkX, minChunkZ, maxChunkX, maxChunkZ, consumer);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        regions.clear();
+        Arrays.fill(occupied, 0L);
+        Arrays.fill(regionsPerBucket, 0);
+    }
+
+    private static void visitRegion(int regionX, int regionZ, long[] mask, int minChunkX, int minChunkZ, int maxChunkX,
+                                    int maxChunkZ, LongConsumer consumer) {
+        int baseX = regionX << ClaimShardStore.REGION_SHIFT;
+        int baseZ = regionZ << ClaimShardStore.REGION_SHIFT;
+        for (int word = 0; word < mask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0L) {
+                int bit = (word << 6) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int chunkX = baseX | (bit & LOCAL_MASK);
+                int chunkZ = baseZ | (bit >>> ClaimShardStore.REGION_SHIFT);
+                if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                    consumer.accept(ChunkPos.asLong(chunkX, chunkZ));
+                }
+            }
+        }
+    }
+
+    private static long regionKey(int chunkX, int chunkZ) {
+        return ChunkPos.asLong(chunkX >> ClaimShardStore.REGION_SHIFT, chunkZ >> ClaimShardStore.REGION_SHIFT);
+    }
+
+    private static int bit(int chunkX, int chunkZ) {
+        return ((chunkZ & LOCAL_MASK) << ClaimShardStore.REGION_SHIFT) | (chunkX & LOCAL_MASK);
+    }
+
+    private static int bucket(int regionX, int regionZ) {
+        int hash = regionX * 0x9E3779B1 ^ regionZ * 0x85EBCA77;
+        return (hash ^ (hash >>> 15)) & (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.mcprotector.data;
+
+import com.mcprotector.McProtectorMod;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+final class ClaimShardStore {
+    static final int REGION_SHIFT = 5;
+    static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final String FILE_PREFIX = "r.";
+    private static final String FILE_SUFFIX = ".dat";
+
+    private final Path root;
+    private final Path directory;
+    private final LongOpenHashSet dirtyRegions = new LongOpenHashSet();
+    private final Set<Long> failedRegions = ConcurrentHashMap.newKeySet();
+    private volatile boolean retryPending;
+    private boolean journalPinned;
+
+    private ClaimShardStore(Path root) {
+        this.root = root;
+        this.directory = root.resolve("regions");
+    }
+
+    static ClaimShardStore forLevel(ServerLevel level) {
+        Path levelRoot = level.getServer().getWorldPath(LevelResource.ROOT);
+        Path dataDirectory = DimensionType.getStorageFolder(level.dimension(), levelRoot).resolve("data");
+        return new ClaimShardStore(dataDirectory.resolve(McProtectorMod.MOD_ID).normalize());
+    }
+
+    Path journalDirectory() {
+        return root.resolve("journal");
+    }
+
+    Path accessLogDirectory() {
+        return root.resolve("access_logs");
+    }
+
+    static long regionKey(long chunkKey) {
+        return ChunkPos.asLong(ChunkPos.getX(chunkKey) >> REGION_SHIFT, ChunkPos.getZ(chunkKey) >> REGION_SHIFT);
+    }
+
+    void markDirty(long chunkKey) {
+        dirtyRegions.add(regionKey(chunkKey));
+    }
+
+    boolean hasDirtyRegions() {
+        return !dirtyRegions.isEmpty() || retryPending;
+    }
+
+    boolean takeRetry() {
+        boolean retry = retryPending;
+        retryPending = false;
+        return retry;
+    }
+
+    void clearDirty() {
+        dirtyRegions.clear();
+    }
+
+    int loadAll(Consumer<CompoundTag> reader) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int loaded = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    reader.accept(NbtIo.readCompressed(file, NbtAccounter.unlimitedHeap()));
+                    loaded++;
+                } catch (IOException ex) {
+                    McProtectorMod.LOGGER.error("Failed to read claim region {}", file, ex);
+                }
+            }
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to list claim regions in {}", directory, ex);
+        }
+        return loaded;
+    }
+
+    List<RegionSnapshot> snapshotDirty(LongFunction<RegionSnapshot> snapshotter) {
+        for (Long regionKey : failedRegions) {
+            failedRegions.remove(regionKey);
+            dirtyRegions.add(regionKey.longValue());
+        }
+        if (dirtyRegions.isEmpty()) {
+            return List.of();
+        }
+        List<RegionSnapshot> snapshots = new ArrayList<>(dirtyRegions.size());
+        LongIterator iterator = dirtyRegions.iterator();
+        while (iterator.hasNext()) {
+            snapshots.add(snapshotter.apply(iterator.nextLong()));
+        }
+        dirtyRegions.clear();
+        return snapshots;
+    }
+
+    boolean write(List<RegionSnapshot> snapshots, CompoundTag metadata, Path metadataFile, int dataVersion,
+                  boolean retry) {
+        boolean written = writeRegions(snapshots, dataVersion);
+        if (metadata != null) {
+            written &= writeMetadata(metadata, metadataFile);
+        }
+        if (!written) {
+            journalPinned = true;
+            retryPending = true;
+            return false;
+        }
+        if (retry) {
+            journalPinned = false;
+        }
+        return !journalPinned;
+    }
+
+    private boolean writeRegions(List<RegionSnapshot> snapshots, int dataVersion) {
+        if (snapshots.isEmpty()) {
+            return true;
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to create claim region directory {}", directory, ex);
+            snapshots.forEach(snapshot -> failedRegions.add(snapshot.regionKey()));
+            return false;
+        }
+        boolean written = true;
+        for (RegionSnapshot snapshot : snapshots) {
+            Path file = regionFile(snapshot.regionKey());
+            try {
+                CompoundTag tag = snapshot.encode(dataVersion);
+                if (tag == null) {
+                    Files.deleteIfExists(file);
+                } else {
+                    writeAtomically(tag, file);
+                }
+            } catch (IOException ex) {
+                McProtectorMod.LOGGER.error("Failed to save claim region {}", file, ex);
+                failedRegions.add(snapshot.regionKey());
+                written = false;
+            }
+        }
+        return written;
+    }
+
+    private static boolean writeMetadata(CompoundTag data, Path file) {
+        CompoundTag root = new CompoundTag();
+        root.put("data", data);
+        NbtUtils.addCurrentDataVersion(root);
+        try {
+            writeAtomically(root, file);
+            return true;
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.error("Failed to save faction data {}", file, ex);
+            return false;
+        }
+    }
+
+    private Path regionFile(long regionKey) {
+        return directory.resolve(FILE_PREFIX + ChunkPos.getX(regionKey) + "." + ChunkPos.getZ(regionKey) + FILE_SUFFIX);
+    }
+
+    private static void writeAtomically(CompoundTag tag, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        NbtIo.writeCompressed(tag, temp);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,50 @@
+package com.mcprotector.data;
+
+import com.mcprotector.McProtectorMod;
+import com.mcprotector.config.FactionConfig;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public final class DataSaveExecutor {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "McProtector-IO");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static volatile boolean synchronous;
+
+    private DataSaveExecutor() {
+    }
+
+    static void execute(Runnable task) {
+        if (synchronous || !FactionConfig.SERVER.asyncDataSaves.get()) {
+            awaitIdle();
+            task.run();
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                McProtectorMod.LOGGER.error("Background faction data save failed", ex);
+            }
+        });
+    }
+
+    public static void setSynchronous(boolean enabled) {
+        synchronous = enabled;
+    }
+
+    public static void awaitIdle() {
+        try {
+            EXECUTOR.submit(() -> {
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            McProtectorMod.LOGGER.error("Failed waiting for faction data saves", ex);
+        }
+    }
+}
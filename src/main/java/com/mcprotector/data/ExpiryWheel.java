@@ -0,0 +1,161 @@
+package com.mcprotector.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+final class ExpiryWheel<K> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final List<Entry<K>[]> levels = new ArrayList<>(LEVELS);
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    ExpiryWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+        for (int i = 0; i < LEVELS; i++) {
+            levels.add((Entry<K>[]) new Entry[SLOTS]);
+        }
+    }
+
+    void schedule(K key, long deadlineMillis) {
+        cancel(key);
+        Entry<K> entry = new Entry<>(key, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        entries.put(key, entry);
+        place(entry);
+    }
+
+    boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    void advance(long nowMillis, Consumer<K> expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<K> due = new ArrayList<>();
+        drainCurrentSlot(due);
+        while (currentTick < targetTick) {
+            if (entries.isEmpty()) {
+                currentTick = targetTick;
+                break;
+            }
+            currentTick++;
+            cascade();
+            drainCurrentSlot(due);
+        }
+        due.forEach(expired);
+    }
+
+    void clear() {
+        entries.clear();
+        for (Entry<K>[] slots : levels) {
+            Arrays.fill(slots, null);
+        }
+    }
+
+    private void drainCurrentSlot(List<K> due) {
+        Entry<K> entry = detach(0, (int) (currentTick & SLOT_MASK));
+        while (entry != null) {
+            Entry<K> next = entry.next;
+            entry.next = null;
+            if (entry.tick <= currentTick) {
+                entries.remove(entry.key);
+                due.add(entry.key);
+            } else {
+                place(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                return;
+            }
+            Entry<K> entry = detach(level, (int) ((currentTick >> shift) & SLOT_MASK));
+            while (entry != null) {
+                Entry<K> next = entry.next;
+                entry.next = null;
+                place(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void place(Entry<K> entry) {
+        long tick = Math.max(entry.tick, currentTick);
+        long delta = Math.min(tick - currentTick, MAX_DELTA);
+        tick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Entry<K>[] slots = levels.get(level);
+        int slot = (int) ((tick >> (SLOT_BITS * level)) & SLOT_MASK);
+        entry.level = level;
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        slots[slot] = entry;
+    }
+
+    private Entry<K> detach(int level, int slot) {
+        Entry<K>[] slots = levels.get(level);
+        Entry<K> head = slots[slot];
+        slots[slot] = null;
+        for (Entry<K> entry = head; entry != null; entry = entry.next) {
+            entry.level = -1;
+        }
+        return head;
+    }
+
+    private void unlink(Entry<K> entry) {
+        if (entry.level < 0) {
+            return;
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            levels.get(entry.level)[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.level = -1;
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long tick;
+        private int level = -1;
+        private int slot;
+        private Entry<K> prev;
+        private Entry<K> next;
+
+        private Entry(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+    }
+}
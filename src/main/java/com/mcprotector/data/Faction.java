@@ -1,6 +1,7 @@
 package com.mcprotector.data;
 
 import com.mcprotector.config.FactionConfig;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.minecraft.ChatFormatting;
 
 import java.util.ArrayList;
@@ -34,6 +35,11 @@ public class Faction {
     private String description;
     private String bannerColor;
     private FactionProtectionTier protectionTier;
+    private final Object2IntOpenHashMap<UUID> memberRoleIndex = new Object2IntOpenHashMap<>();
+    private final long[] relationMasks = new long[FactionRelation.values().length];
+    private long[] roleMasks = new long[0];
+    private boolean masksDirty = true;
+    private Runnable changeListener;
 
     public Faction(UUID id, String name, UUID owner) {
         this.id = id;
@@ -87,6 +93,8 @@ public class Faction {
             normalized = ROLE_MEMBER;
         }
         members.put(player, normalized);
+        masksDirty = true;
+        changed();
     }
 
     public String getRole(UUID player) {
@@ -95,15 +103,23 @@ public class Faction {
 
     public void removeMember(UUID player) {
         members.remove(player);
+        masksDirty = true;
+        changed();
     }
 
     public boolean hasPermission(UUID player, FactionPermission permission) {
-        String role = members.get(player);
-        if (role == null || role.isBlank()) {
-            return false;
-        }
-        Set<FactionPermission> allowed = permissions.get(normalizeRoleName(role));
-        return allowed != null && allowed.contains(permission);
+        return (getPermissionMask(player) & permission.mask()) != 0L;
+    }
+
+    public long getPermissionMask(UUID player) {
+        compileMasks();
+        int index = memberRoleIndex.getInt(player);
+        return index < 0 ? 0L : roleMasks[index];
+    }
+
+    public boolean hasRelationPermission(FactionRelation relation, FactionPermission permission) {
+        compileMasks();
+        return (relationMasks[relation.ordinal()] & permission.mask()) != 0L;
     }
 
     public Map<String, EnumSet<FactionPermission>> getPermissions() {
@@ -116,6 +132,8 @@ public class Faction {
             return;
         }
         permissions.put(normalized, perms);
+        masksDirty = true;
+        changed();
     }
 
     public EnumMap<FactionRelation, EnumSet<FactionPermission>> getRelationPermissions() {
@@ -128,6 +146,8 @@ public class Faction {
 
     public void setRelationPermissions(FactionRelation relation, EnumSet<FactionPermission> permissions) {
         relationPermissions.put(relation, permissions);
+        masksDirty = true;
+        changed();
     }
 
     public String getRoleDisplayName(String role) {
@@ -142,6 +162,7 @@ public class Faction {
         }
         String displayName = name == null || name.isBlank() ? normalized : name.trim();
         roleDisplayNames.put(normalized, displayName);
+        changed();
     }
 
     public Map<String, String> getRoleDisplayNames() {
@@ -165,6 +186,8 @@ public class Faction {
         String display = displayName == null || displayName.isBlank() ? normalized : displayName.trim();
         roleDisplayNames.put(normalized, display);
         permissions.putIfAbsent(normalized, EnumSet.noneOf(FactionPermission.class));
+        masksDirty = true;
+        changed();
         return true;
     }
 
@@ -177,6 +200,8 @@ public class Faction {
             return false;
         }
         permissions.remove(normalized);
+        masksDirty = true;
+        changed();
         return true;
     }
 
@@ -186,10 +211,12 @@ public class Faction {
 
     public void addTrustedPlayer(UUID playerId) {
         trustedPlayers.add(playerId);
+        changed();
     }
 
     public void removeTrustedPlayer(UUID playerId) {
         trustedPlayers.remove(playerId);
+        changed();
     }
 
     public boolean isTrusted(UUID playerId) {
@@ -214,6 +241,7 @@ public class Faction {
 
     public void setColorName(String colorName) {
         this.colorName = FactionConfig.normalizeFactionHexColor(colorName);
+        changed();
     }
 
     public String getMotd() {
@@ -222,6 +250,7 @@ public class Faction {
 
     public void setMotd(String motd) {
         this.motd = motd;
+        changed();
     }
 
     public String getDescription() {
@@ -230,6 +259,7 @@ public class Faction {
 
     public void setDescription(String description) {
         this.description = description;
+        changed();
     }
 
     public String getBannerColor() {
@@ -238,6 +268,7 @@ public class Faction {
 
     public void setBannerColor(String bannerColor) {
         this.bannerColor = bannerColor;
+        changed();
     }
 
     public FactionProtectionTier getProtectionTier() {
@@ -246,6 +277,7 @@ public class Faction {
 
     public void setProtectionTier(FactionProtectionTier protectionTier) {
         this.protectionTier = protectionTier;
+        changed();
     }
 
     public List<String> getRules() {
@@ -258,12 +290,17 @@ public class Faction {
             return false;
         }
         rules.add(trimmed);
+        changed();
         return true;
     }
 
     public boolean removeRule(String rule) {
         String trimmed = rule == null ? "" : rule.trim();
-        return rules.remove(trimmed);
+        if (!rules.remove(trimmed)) {
+            return false;
+        }
+        changed();
+        return true;
     }
 
     private void applyDefaults() {
@@ -321,10 +358,50 @@ public class Faction {
             roleDisplayNames.putIfAbsent(reserved, defaults.getOrDefault(reserved, reserved));
             permissions.putIfAbsent(reserved, EnumSet.noneOf(FactionPermission.class));
         }
+        masksDirty = true;
+        changed();
     }
 
     public void clearRolesAndPermissions() {
         roleDisplayNames.clear();
         permissions.clear();
+        masksDirty = true;
+        changed();
+    }
+
+    void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void changed() {
+        if (changeListener != null) {
+            changeListener.run();
+        }
+    }
+
+    private void compileMasks() {
+        if (!masksDirty) {
+            return;
+        }
+        Map<String, Integer> roleIndex = new HashMap<>();
+        long[] masks = new long[permissions.size()];
+        int next = 0;
+        for (Map.Entry<String, EnumSet<FactionPermission>> entry : permissions.entrySet()) {
+            roleIndex.put(entry.getKey(), next);
+            masks[next++] = FactionPermission.toMask(entry.getValue());
+        }
+        memberRoleIndex.clear();
+        memberRoleIndex.defaultReturnValue(-1);
+        for (Map.Entry<UUID, String> entry : members.entrySet()) {
+            Integer index = roleIndex.get(normalizeRoleName(entry.getValue()));
+            if (index != null) {
+                memberRoleIndex.put(entry.getKey(), index.intValue());
+            }
+        }
+        for (FactionRelation relation : FactionRelation.values()) {
+            relationMasks[relation.ordinal()] = FactionPermission.toMask(relationPermissions.get(relation));
+        }
+        roleMasks = masks;
+        masksDirty = false;
     }
 }
@@ -0,0 +1,273 @@
+package com.mcprotector.data;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+final class FactionNameIndex {
+    private static final int MAX_SIMILAR_DISTANCE = 2;
+
+    private final TreeMap<String, Set<UUID>> names = new TreeMap<>();
+    private final TreeMap<String, Set<UUID>> wordStarts = new TreeMap<>();
+    private Node root;
+    private int liveNodes;
+    private int deadNodes;
+
+    void add(UUID factionId, String name) {
+        String key = lowerCase(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        names.computeIfAbsent(key, ignored -> new HashSet<>(2)).add(factionId);
+        for (int i = key.indexOf('_'); i >= 0; i = key.indexOf('_', i + 1)) {
+            if (i + 1 < key.length()) {
+                wordStarts.computeIfAbsent(key.substring(i + 1), ignored -> new HashSet<>(2)).add(factionId);
+            }
+        }
+        String normalized = normalize(name);
+        if (!normalized.isEmpty()) {
+            insert(normalized, factionId);
+        }
+    }
+
+    void remove(UUID factionId, String name) {
+        String key = lowerCase(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        removeFrom(names, key, factionId);
+        for (int i = key.indexOf('_'); i >= 0; i = key.indexOf('_', i + 1)) {
+            if (i + 1 < key.length()) {
+                removeFrom(wordStarts, key.substring(i + 1), factionId);
+            }
+        }
+        String normalized = normalize(name);
+        if (!normalized.isEmpty()) {
+            delete(normalized, factionId);
+        }
+    }
+
+    void clear() {
+        names.clear();
+        wordStarts.clear();
+        root = null;
+        liveNodes = 0;
+        deadNodes = 0;
+    }
+
+    Set<UUID> find(String name) {
+        Set<UUID> ids = names.get(lowerCase(name));
+        return ids == null ? Set.of() : ids;
+    }
+
+    boolean hasSimilar(String name, UUID excludedFactionId) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty() || root == null) {
+            return false;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = levenshteinDistance(normalized, node.key);
+            if (distance <= MAX_SIMILAR_DISTANCE && hasOther(node.ids, excludedFactionId)
+                && isVerySimilar(normalized, node.key)) {
+                return true;
+            }
+            if (node.children == null) {
+                continue;
+            }
+            for (int edge = Math.max(1, distance - MAX_SIMILAR_DISTANCE); edge <= distance + MAX_SIMILAR_DISTANCE; edge++) {
+                Node child = node.children.get(edge);
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+        return false;
+    }
+
+    Collection<UUID> matchingPrefix(String prefix) {
+        String key = lowerCase(prefix);
+        Set<UUID> matches = new HashSet<>();
+        collectPrefix(names, key, matches);
+        collectPrefix(wordStarts, key, matches);
+        return matches;
+    }
+
+    private static void collectPrefix(TreeMap<String, Set<UUID>> map, String prefix, Set<UUID> matches) {
+        Map<String, Set<UUID>> range = prefix.isEmpty() ? map : map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (Set<UUID> ids : range.values()) {
+            matches.addAll(ids);
+        }
+    }
+
+    private static void removeFrom(TreeMap<String, Set<UUID>> map, String key, UUID factionId) {
+        Set<UUID> ids = map.get(key);
+        if (ids != null && ids.remove(factionId) && ids.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static boolean hasOther(Set<UUID> ids, UUID excludedFactionId) {
+        if (ids.isEmpty()) {
+            return false;
+        }
+        return excludedFactionId == null || ids.size() > 1 || !ids.contains(excludedFactionId);
+    }
+
+    private void insert(String normalized, UUID factionId) {
+        if (root == null) {
+            root = new Node(normalized);
+            root.ids.add(factionId);
+            liveNodes++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = levenshteinDistance(normalized, node.key);
+            if (distance == 0) {
+                if (node.ids.isEmpty()) {
+                    deadNodes--;
+                    liveNodes++;
+                }
+                node.ids.add(factionId);
+                return;
+            }
+            if (node.children == null) {
+                node.children = new Int2ObjectOpenHashMap<>();
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                child = new Node(normalized);
+                child.ids.add(factionId);
+                node.children.put(distance, child);
+                liveNodes++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private void delete(String normalized, UUID factionId) {
+        Node node = root;
+        while (node != null) {
+            int distance = levenshteinDistance(normalized, node.key);
+            if (distance == 0) {
+                if (node.ids.remove(factionId) && node.ids.isEmpty()) {
+                    liveNodes--;
+                    deadNodes++;
+                    if (deadNodes > liveNodes) {
+                        rebuild();
+                    }
+                }
+                return;
+            }
+            node = node.children == null ? null : node.children.get(distance);
+        }
+    }
+
+    private void rebuild() {
+        List<Node> live = new ArrayList<>(liveNodes);
+        Deque<Node> pending = new ArrayDeque<>();
+        if (root != null) {
+            pending.push(root);
+        }
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (!node.ids.isEmpty()) {
+                live.add(node);
+            }
+            if (node.children != null) {
+                pending.addAll(node.children.values());
+            }
+        }
+        root = null;
+        liveNodes = 0;
+        deadNodes = 0;
+        for (Node node : live) {
+            for (UUID factionId : node.ids) {
+                insert(node.key, factionId);
+            }
+        }
+    }
+
+    static boolean isVerySimilar(String first, String second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return false;
+        }
+        if (first.equals(second)) {
+            return true;
+        }
+        int lengthDifference = Math.abs(first.length() - second.length());
+        if ((first.startsWith(second) || second.startsWith(first)) && lengthDifference <= 2) {
+            return true;
+        }
+        if (Math.min(first.length(), second.length()) < 4) {
+            return false;
+        }
+        int threshold = Math.min(first.length(), second.length()) >= 10 ? 2 : 1;
+        if (lengthDifference > threshold) {
+            return false;
+        }
+        return levenshteinDistance(first, second) <= threshold;
+    }
+
+    static int levenshteinDistance(String first, String second) {
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= second.length(); j++) {
+                int substitutionCost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(
+                    Math.min(current[j - 1] + 1, previous[j] + 1),
+                    previous[j - 1] + substitutionCost
+                );
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()];
+    }
+
+    static String normalize(String name) {
+        String trimmed = lowerCase(name);
+        StringBuilder builder = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            char ch = trimmed.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                builder.append(ch);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String lowerCase(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Node {
+        private final String key;
+        private final Set<UUID> ids = new HashSet<>(2);
+        private Int2ObjectOpenHashMap<Node> children;
+
+        private Node(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.mcprotector.data;
 
+import java.util.Set;
+
 public enum FactionPermission {
     BLOCK_BREAK,
     BLOCK_PLACE,
@@ -14,5 +16,21 @@ public enum FactionPermission {
     MANAGE_RELATIONS,
     MANAGE_MEMBERS,
     MANAGE_PERMISSIONS,
-    MANAGE_SETTINGS
+    MANAGE_SETTINGS;
+
+    public static final long BUILD_MASK = BLOCK_BREAK.mask() | BLOCK_PLACE.mask() | FLUID_PLACE.mask();
+
+    public long mask() {
+        return 1L << ordinal();
+    }
+
+    public static long toMask(Set<FactionPermission> permissions) {
+        long mask = 0L;
+        if (permissions != null) {
+            for (FactionPermission permission : permissions) {
+                mask |= permission.mask();
+            }
+        }
+        return mask;
+    }
 }
@@ -0,0 +1,1338 @@
+package com.mcprotector.data;
+
+import com.mcprotector.McProtectorMod;
+import com.mcprotector.config.FactionConfig;
+import com.mcprotector.data.FactionData.AllyInvite;
+import com.mcprotector.data.FactionData.FactionHome;
+import com.mcprotector.data.FactionData.FactionInvite;
+import com.mcprotector.data.FactionData.TimedStateExpiry;
+import com.mcprotector.data.FactionData.TimedStateKind;
+import com.mcprotector.data.FactionData.VassalBreakaway;
+import com.mcprotector.data.FactionData.VassalContract;
+import com.mcprotector.data.FactionData.VassalInvite;
+import com.mcprotector.data.FactionData.WarEndRequest;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+final class FactionRegistry {
+    private static final long EXPIRY_TICK_MILLIS = 1000L;
+    private static final long WAR_END_REQUEST_MILLIS = 120_000L;
+    private static final UUID SYSTEM_OWNER = new UUID(0L, 0L);
+
+    private final Map<UUID, Faction> factions = new HashMap<>();
+    private final FactionNameIndex nameIndex = new FactionNameIndex();
+    private final Map<UUID, UUID> playerFaction = new HashMap<>();
+    private final HandleRegistry factionHandles = new HandleRegistry();
+    private final Map<UUID, Integer> claimBoosts = new HashMap<>();
+    private final RelationMatrix relations = new RelationMatrix();
+    private final Map<UUID, FactionInvite> pendingInvites = new HashMap<>();
+    private final Map<UUID, VassalInvite> pendingVassalInvites = new HashMap<>();
+    private final Map<UUID, AllyInvite> pendingAllyInvites = new HashMap<>();
+    private final Map<UUID, VassalContract> vassalContracts = new HashMap<>();
+    private final Map<UUID, VassalBreakaway> vassalBreakaways = new HashMap<>();
+    private final Map<UUID, Boolean> autoClaimSettings = new HashMap<>();
+    private final Map<UUID, Boolean> borderSettings = new HashMap<>();
+    private final Map<UUID, FactionHome> factionHomes = new HashMap<>();
+    private final WarRegistry wars = new WarRegistry();
+    private final ExpiryWheel<UUID> inviteExpiry = new ExpiryWheel<>(EXPIRY_TICK_MILLIS, System.currentTimeMillis());
+    private final ExpiryWheel<UUID> vassalInviteExpiry = new ExpiryWheel<>(EXPIRY_TICK_MILLIS, System.currentTimeMillis());
+    private final ExpiryWheel<UUID> allyInviteExpiry = new ExpiryWheel<>(EXPIRY_TICK_MILLIS, System.currentTimeMillis());
+    private final ExpiryWheel<WarRegistry.WarPair> warEndExpiry = new ExpiryWheel<>(EXPIRY_TICK_MILLIS, System.currentTimeMillis());
+    private final List<FactionData> layers = new ArrayList<>();
+    private final Set<UUID> changedFactions = new LinkedHashSet<>();
+    private final Runnable dirtyHandler;
+    private ClaimJournal journal;
+
+    FactionRegistry(Runnable dirtyHandler) {
+        this.dirtyHandler = dirtyHandler;
+    }
+
+    void attachJournal(ClaimJournal journal) {
+        this.journal = journal;
+    }
+
+    HandleRegistry factionHandles() {
+        return factionHandles;
+    }
+
+    void addLayer(FactionData layer) {
+        if (!layers.contains(layer)) {
+            layers.add(layer);
+        }
+    }
+
+    void markDirty() {
+        dirtyHandler.run();
+    }
+
+    void journalChangedFactions() {
+        if (changedFactions.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            for (UUID factionId : changedFactions) {
+                Faction faction = factions.get(factionId);
+                if (faction == null) {
+                    continue;
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DataOutputStream output = new DataOutputStream(bytes)) {
+                    NbtIo.write(writeFaction(faction), output);
+                } catch (IOException ex) {
+                    McProtectorMod.LOGGER.error("Failed to encode faction {} for the claim journal", factionId, ex);
+                    continue;
+                }
+                journal.factionState(factionId, bytes.toByteArray());
+            }
+        }
+        changedFactions.clear();
+    }
+
+    private void track(Faction faction) {
+        UUID factionId = faction.getId();
+        faction.setChangeListener(() -> changedFactions.add(factionId));
+    }
+
+    void clear() {
+        factions.clear();
+        nameIndex.clear();
+        playerFaction.clear();
+        claimBoosts.clear();
+        relations.clear();
+        pendingInvites.clear();
+        pendingVassalInvites.clear();
+        pendingAllyInvites.clear();
+        inviteExpiry.clear();
+        vassalInviteExpiry.clear();
+        allyInviteExpiry.clear();
+        warEndExpiry.clear();
+        vassalContracts.clear();
+        vassalBreakaways.clear();
+        autoClaimSettings.clear();
+        borderSettings.clear();
+        factionHomes.clear();
+        wars.clear();
+    }
+
+    void replayCreate(UUID factionId, String name, UUID ownerId) {
+        if (factions.containsKey(factionId)) {
+            return;
+        }
+        Faction faction = new Faction(factionId, name, ownerId);
+        factions.put(factionId, faction);
+        nameIndex.add(factionId, name);
+        track(faction);
+        if (!SYSTEM_OWNER.equals(ownerId)) {
+            playerFaction.put(ownerId, factionId);
+        }
+        markDirty();
+    }
+
+    void replayRename(UUID factionId, String name) {
+        Faction faction = factions.get(factionId);
+        if (faction != null) {
+            nameIndex.remove(factionId, faction.getName());
+            faction.setName(name);
+            nameIndex.add(factionId, name);
+            markDirty();
+        }
+    }
+
+    void replayFactionState(UUID factionId, byte[] state) {
+        Faction previous = factions.get(factionId);
+        if (previous == null) {
+            return;
+        }
+        CompoundTag factionTag;
+        try {
+            factionTag = NbtIo.read(new DataInputStream(new ByteArrayInputStream(state)));
+        } catch (IOException ex) {
+            McProtectorMod.LOGGER.warn("Skipping unreadable faction {} state in the claim journal", factionId);
+            return;
+        }
+        factions.remove(factionId);
+        nameIndex.remove(factionId, previous.getName());
+        for (UUID member : previous.getMembers().keySet()) {
+            playerFaction.remove(member, factionId);
+        }
+        Faction faction = readFaction(factionTag, true);
+        factions.put(factionId, faction);
+        nameIndex.add(factionId, faction.getName());
+        track(faction);
+        markDirty();
+    }
+
+    void replayVassalContract(UUID vassalId, UUID overlordId, long startedAt) {
+        if (overlordId == null) {
+            vassalContracts.remove(vassalId);
+        } else {
+            vassalContracts.put(vassalId, new VassalContract(overlordId, startedAt));
+        }
+        markDirty();
+    }
+
+    void replayVassalBreakaway(UUID vassalId, UUID overlordId, int requiredClaims, int capturedClaims, long startedAt) {
+        if (overlordId == null) {
+            vassalBreakaways.remove(vassalId);
+        } else {
+            vassalBreakaways.put(vassalId, new VassalBreakaway(overlordId, requiredClaims, capturedClaims, startedAt));
+        }
+        markDirty();
+    }
+
+    void replayWarState(UUID first, UUID second, Long declaredAt, UUID declaredBy) {
+        if (declaredAt == null) {
+            wars.remove(first, second);
+        } else {
+            WarRegistry.WarState state = wars.getOrCreate(first, second);
+            state.declaredAt = declaredAt;
+            state.declaredBy = declaredBy;
+            state.endRequest = null;
+        }
+        markDirty();
+    }
+
+    void read(CompoundTag tag, boolean merge) {
+        int dataVersion = FactionData.readDataVersion(tag);
+        ListTag factionsTag = tag.getList("Factions", Tag.TAG_COMPOUND);
+        for (Tag entry : factionsTag) {
+            CompoundTag factionTag = (CompoundTag) entry;
+            Faction faction = readFaction(factionTag, merge);
+            if (faction == null) {
+                continue;
+            }
+            factions.put(faction.getId(), faction);
+            nameIndex.add(faction.getId(), faction.getName());
+            track(faction);
+        }
+        ListTag relationsTag = tag.getList("Relations", Tag.TAG_COMPOUND);
+        for (Tag relationEntry : relationsTag) {
+            CompoundTag relation = (CompoundTag) relationEntry;
+            UUID source = relation.getUUID("Source");
+            UUID target = relation.getUUID("Target");
+            FactionRelation relationType = FactionRelation.valueOf(relation.getString("Type"));
+            relations.set(factionHandles.acquire(source), factionHandles.acquire(target), relationType);
+        }
+        if (dataVersion >= 2 && tag.contains("Invites")) {
+            ListTag invitesTag = tag.getList("Invites", Tag.TAG_COMPOUND);
+            for (Tag inviteEntry : invitesTag) {
+                CompoundTag invite = (CompoundTag) inviteEntry;
+                UUID playerId = invite.getUUID("Player");
+                UUID factionId = invite.getUUID("Faction");
+                long expiresAt = invite.getLong("ExpiresAt");
+                if (pendingInvites.putIfAbsent(playerId, new FactionInvite(factionId, expiresAt)) == null) {
+                    inviteExpiry.schedule(playerId, expiresAt + 1);
+                }
+            }
+        }
+        if (dataVersion >= 8 && tag.contains("VassalInvites")) {
+            ListTag invitesTag = tag.getList("VassalInvites", Tag.TAG_COMPOUND);
+            for (Tag inviteEntry : invitesTag) {
+                CompoundTag invite = (CompoundTag) inviteEntry;
+                UUID vassalId = invite.getUUID("Vassal");
+                UUID overlordId = invite.getUUID("Overlord");
+                long expiresAt = invite.getLong("ExpiresAt");
+                if (pendingVassalInvites.putIfAbsent(vassalId, new VassalInvite(overlordId, expiresAt)) == null) {
+                    vassalInviteExpiry.schedule(vassalId, expiresAt + 1);
+                }
+            }
+        }
+        if (dataVersion >= 10 && tag.contains("AllyInvites")) {
+            ListTag invitesTag = tag.getList("AllyInvites", Tag.TAG_COMPOUND);
+            for (Tag inviteEntry : invitesTag) {
+                CompoundTag invite = (CompoundTag) inviteEntry;
+                UUID targetId = invite.getUUID("Target");
+                UUID proposerId = invite.getUUID("Proposer");
+                long expiresAt = invite.getLong("ExpiresAt");
+                if (pendingAllyInvites.putIfAbsent(targetId, new AllyInvite(proposerId, expiresAt)) == null) {
+                    allyInviteExpiry.schedule(targetId, expiresAt + 1);
+                }
+            }
+        }
+        if (dataVersion >= 8 && tag.contains("VassalContracts")) {
+            ListTag contractsTag = tag.getList("VassalContracts", Tag.TAG_COMPOUND);
+            for (Tag contractEntry : contractsTag) {
+                CompoundTag contract = (CompoundTag) contractEntry;
+                UUID vassalId = contract.getUUID("Vassal");
+                UUID overlordId = contract.getUUID("Overlord");
+                long startedAt = contract.getLong("StartedAt");
+                vassalContracts.putIfAbsent(vassalId, new VassalContract(overlordId, startedAt));
+            }
+        }
+        if (dataVersion >= 8 && tag.contains("VassalBreakaways")) {
+            ListTag breakawayTag = tag.getList("VassalBreakaways", Tag.TAG_COMPOUND);
+            for (Tag breakawayEntry : breakawayTag) {
+                CompoundTag breakaway = (CompoundTag) breakawayEntry;
+                UUID vassalId = breakaway.getUUID("Vassal");
+                UUID overlordId = breakaway.getUUID("Overlord");
+                int requiredClaims = breakaway.getInt("RequiredClaims");
+                int capturedClaims = breakaway.getInt("CapturedClaims");
+                long startedAt = breakaway.contains("StartedAt") ? breakaway.getLong("StartedAt") : System.currentTimeMillis();
+                vassalBreakaways.putIfAbsent(vassalId, new VassalBreakaway(overlordId, requiredClaims, capturedClaims, startedAt));
+            }
+        }
+        if (dataVersion >= 3 && tag.contains("PlayerSettings")) {
+            ListTag settingsTag = tag.getList("PlayerSettings", Tag.TAG_COMPOUND);
+            for (Tag entry : settingsTag) {
+                CompoundTag setting = (CompoundTag) entry;
+                UUID playerId = setting.getUUID("Player");
+                if (setting.contains("AutoClaim")) {
+                    autoClaimSettings.putIfAbsent(playerId, setting.getBoolean("AutoClaim"));
+                }
+                if (setting.contains("BorderEnabled")) {
+                    borderSettings.putIfAbsent(playerId, setting.getBoolean("BorderEnabled"));
+                }
+            }
+        }
+        if (dataVersion >= 3 && tag.contains("Homes")) {
+            ListTag homesTag = tag.getList("Homes", Tag.TAG_COMPOUND);
+            for (Tag entry : homesTag) {
+                CompoundTag homeTag = (CompoundTag) entry;
+                UUID factionId = homeTag.getUUID("Faction");
+                String dimension = homeTag.getString("Dimension");
+                BlockPos pos = new BlockPos(homeTag.getInt("X"), homeTag.getInt("Y"), homeTag.getInt("Z"));
+                factionHomes.putIfAbsent(factionId, new FactionHome(dimension, pos));
+            }
+        }
+        if (dataVersion >= 9 && tag.contains("ClaimBoosts")) {
+            ListTag boostsTag = tag.getList("ClaimBoosts", Tag.TAG_COMPOUND);
+            for (Tag entry : boostsTag) {
+                CompoundTag boostTag = (CompoundTag) entry;
+                UUID factionId = boostTag.getUUID("Faction");
+                int boost = boostTag.getInt("Boost");
+                if (boost > 0) {
+                    claimBoosts.putIfAbsent(factionId, boost);
+                }
+            }
+        }
+        if (dataVersion >= 12 && tag.contains("WarStates")) {
+            ListTag warTag = tag.getList("WarStates", Tag.TAG_COMPOUND);
+            for (Tag entry : warTag) {
+                CompoundTag warState = (CompoundTag) entry;
+                UUID first = warState.getUUID("First");
+                UUID second = warState.getUUID("Second");
+                WarRegistry.WarState state = wars.getOrCreate(first, second);
+                if (warState.contains("DeclaredAt") && state.declaredAt == null) {
+                    state.declaredAt = warState.getLong("DeclaredAt");
+                }
+                if (warState.contains("DeclaredBy") && state.declaredBy == null) {
+                    state.declaredBy = warState.getUUID("DeclaredBy");
+                }
+                wars.compact(first, second);
+            }
+        }
+        if (dataVersion >= 12 && tag.contains("WarEndRequests")) {
+            ListTag requestsTag = tag.getList("WarEndRequests", Tag.TAG_COMPOUND);
+            for (Tag entry : requestsTag) {
+                CompoundTag requestTag = (CompoundTag) entry;
+                UUID first = requestTag.getUUID("First");
+                UUID second = requestTag.getUUID("Second");
+                UUID requester = requestTag.getUUID("Requester");
+                long createdAt = requestTag.getLong("CreatedAt");
+                WarRegistry.WarState state = wars.getOrCreate(first, second);
+                if (state.endRequest == null) {
+                    state.endRequest = new WarEndRequest(requester, createdAt);
+                    warEndExpiry.schedule(WarRegistry.WarPair.of(first, second), createdAt + WAR_END_REQUEST_MILLIS + 1);
+                }
+            }
+        }
+    }
+
+    void write(CompoundTag tag) {
+        ListTag factionsTag = new ListTag();
+        for (Faction faction : factions.values()) {
+            factionsTag.add(writeFaction(faction));
+        }
+        tag.put("Factions", factionsTag);
+        ListTag boostsTag = new ListTag();
+        for (Map.Entry<UUID, Integer> entry : claimBoosts.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                continue;
+            }
+            CompoundTag boostTag = new CompoundTag();
+            boostTag.putUUID("Faction", entry.getKey());
+            boostTag.putInt("Boost", entry.getValue());
+            boostsTag.add(boostTag);
+        }
+        tag.put("ClaimBoosts", boostsTag);
+        ListTag relationsTag = new ListTag();
+        relations.forEach((source, target, relation) -> {
+            CompoundTag relationTag = new CompoundTag();
+            relationTag.putUUID("Source", factionHandles.resolve(source));
+            relationTag.putUUID("Target", factionHandles.resolve(target));
+            relationTag.putString("Type", relation.name());
+            relationsTag.add(relationTag);
+        });
+        tag.put("Relations", relationsTag);
+        long now = System.currentTimeMillis();
+        ListTag invitesTag = new ListTag();
+        for (Map.Entry<UUID, FactionInvite> entry : pendingInvites.entrySet()) {
+            if (entry.getValue().expiresAt() < now) {
+                continue;
+            }
+            CompoundTag invite = new CompoundTag();
+            invite.putUUID("Player", entry.getKey());
+            invite.putUUID("Faction", entry.getValue().factionId());
+            invite.putLong("ExpiresAt", entry.getValue().expiresAt());
+            invitesTag.add(invite);
+        }
+        tag.put("Invites", invitesTag);
+        ListTag vassalInvitesTag = new ListTag();
+        for (Map.Entry<UUID, VassalInvite> entry : pendingVassalInvites.entrySet()) {
+            if (entry.getValue().expiresAt() < now) {
+                continue;
+            }
+            CompoundTag invite = new CompoundTag();
+            invite.putUUID("Vassal", entry.getKey());
+            invite.putUUID("Overlord", entry.getValue().overlordId());
+            invite.putLong("ExpiresAt", entry.getValue().expiresAt());
+            vassalInvitesTag.add(invite);
+        }
+        tag.put("VassalInvites", vassalInvitesTag);
+        ListTag allyInvitesTag = new ListTag();
+        for (Map.Entry<UUID, AllyInvite> entry : pendingAllyInvites.entrySet()) {
+            if (entry.getValue().expiresAt() < now) {
+                continue;
+            }
+            CompoundTag invite = new CompoundTag();
+            invite.putUUID("Target", entry.getKey());
+            invite.putUUID("Proposer", entry.getValue().proposerId());
+            invite.putLong("ExpiresAt", entry.getValue().expiresAt());
+            allyInvitesTag.add(invite);
+        }
+        tag.put("AllyInvites", allyInvitesTag);
+        ListTag vassalContractsTag = new ListTag();
+        for (Map.Entry<UUID, VassalContract> entry : vassalContracts.entrySet()) {
+            CompoundTag contract = new CompoundTag();
+            contract.putUUID("Vassal", entry.getKey());
+            contract.putUUID("Overlord", entry.getValue().overlordId());
+            contract.putLong("StartedAt", entry.getValue().startedAt());
+            vassalContractsTag.add(contract);
+        }
+        tag.put("VassalContracts", vassalContractsTag);
+        ListTag breakawayTag = new ListTag();
+        for (Map.Entry<UUID, VassalBreakaway> entry : vassalBreakaways.entrySet()) {
+            CompoundTag breakaway = new CompoundTag();
+            breakaway.putUUID("Vassal", entry.getKey());
+            breakaway.putUUID("Overlord", entry.getValue().overlordId());
+            breakaway.putInt("RequiredClaims", entry.getValue().requiredClaims());
+            breakaway.putInt("CapturedClaims", entry.getValue().capturedClaims());
+            breakaway.putLong("StartedAt", entry.getValue().startedAt());
+            breakawayTag.add(breakaway);
+        }
+        tag.put("VassalBreakaways", breakawayTag);
+        ListTag settingsTag = new ListTag();
+        for (UUID playerId : autoClaimSettings.keySet()) {
+            CompoundTag setting = new CompoundTag();
+            setting.putUUID("Player", playerId);
+            setting.putBoolean("AutoClaim", autoClaimSettings.getOrDefault(playerId, false));
+            setting.putBoolean("BorderEnabled", borderSettings.getOrDefault(playerId, false));
+            settingsTag.add(setting);
+        }
+        for (UUID playerId : borderSettings.keySet()) {
+            if (autoClaimSettings.containsKey(playerId)) {
+                continue;
+            }
+            CompoundTag setting = new CompoundTag();
+            setting.putUUID("Player", playerId);
+            setting.putBoolean("AutoClaim", autoClaimSettings.getOrDefault(playerId, false));
+            setting.putBoolean("BorderEnabled", borderSettings.getOrDefault(playerId, false));
+            settingsTag.add(setting);
+        }
+        tag.put("PlayerSettings", settingsTag);
+        ListTag homesTag = new ListTag();
+        for (Map.Entry<UUID, FactionHome> entry : factionHomes.entrySet()) {
+            CompoundTag homeTag = new CompoundTag();
+            homeTag.putUUID("Faction", entry.getKey());
+            homeTag.putString("Dimension", entry.getValue().dimension());
+            homeTag.putInt("X", entry.getValue().pos().getX());
+            homeTag.putInt("Y", entry.getValue().pos().getY());
+            homeTag.putInt("Z", entry.getValue().pos().getZ());
+            homesTag.add(homeTag);
+        }
+        tag.put("Homes", homesTag);
+        ListTag warTag = new ListTag();
+        ListTag requestTag = new ListTag();
+        wars.forEach((pair, state) -> {
+            if (state.declaredAt != null) {
+                CompoundTag warState = new CompoundTag();
+                warState.putUUID("First", pair.first());
+                warState.putUUID("Second", pair.second());
+                warState.putLong("DeclaredAt", state.declaredAt);
+                if (state.declaredBy != null) {
+                    warState.putUUID("DeclaredBy", state.declaredBy);
+                }
+                warTag.add(warState);
+            }
+            if (state.endRequest != null && state.endRequest.createdAt() + WAR_END_REQUEST_MILLIS >= now) {
+                CompoundTag request = new CompoundTag();
+                request.putUUID("First", pair.first());
+                request.putUUID("Second", pair.second());
+                request.putUUID("Requester", state.endRequest.requesterFactionId());
+                request.putLong("CreatedAt", state.endRequest.createdAt());
+                requestTag.add(request);
+            }
+        });
+        tag.put("WarStates", warTag);
+        tag.put("WarEndRequests", requestTag);
+    }
+
+    private Faction readFaction(CompoundTag factionTag, boolean merge) {
+        UUID id = factionTag.getUUID("Id");
+        if (merge && factions.containsKey(id)) {
+            return null;
+        }
+        UUID owner = factionTag.getUUID("Owner");
+        String name = factionTag.getString("Name");
+        ListTag members = factionTag.getList("Members", Tag.TAG_COMPOUND);
+        if (merge && !SYSTEM_OWNER.equals(owner) && playerFaction.containsKey(owner)) {
+            UUID successor = pickSuccessor(members, owner);
+            McProtectorMod.LOGGER.warn("Owner {} of faction {} is already in {} while merging dimension data; ownership passes to {}",
+                owner, name, playerFaction.get(owner), SYSTEM_OWNER.equals(successor) ? "the server" : successor);
+            owner = successor;
+        }
+        Faction faction = new Faction(id, name, owner);
+        if (factionTag.contains("Color")) {
+            faction.setColorName(factionTag.getString("Color"));
+        }
+        if (factionTag.contains("Motd")) {
+            faction.setMotd(factionTag.getString("Motd"));
+        }
+        if (factionTag.contains("Description")) {
+            faction.setDescription(factionTag.getString("Description"));
+        }
+        if (factionTag.contains("BannerColor")) {
+            faction.setBannerColor(factionTag.getString("BannerColor"));
+        }
+        if (factionTag.contains("ProtectionTier")) {
+            faction.setProtectionTier(FactionProtectionTier.valueOf(factionTag.getString("ProtectionTier")));
+        }
+        if (factionTag.contains("Roles")) {
+            ListTag rolesTag = factionTag.getList("Roles", Tag.TAG_COMPOUND);
+            if (!rolesTag.isEmpty()) {
+                faction.clearRolesAndPermissions();
+                for (Tag roleEntry : rolesTag) {
+                    CompoundTag roleTag = (CompoundTag) roleEntry;
+                    String roleName = roleTag.getString("Name");
+                    if (roleName == null || roleName.isBlank()) {
+                        continue;
+                    }
+                    String displayName = roleTag.contains("Display") ? roleTag.getString("Display") : roleName;
+                    faction.addRole(roleName, displayName);
+                }
+                faction.ensureReservedRoles();
+            }
+        } else if (factionTag.contains("RankNames")) {
+            CompoundTag ranksTag = factionTag.getCompound("RankNames");
+            for (String roleName : ranksTag.getAllKeys()) {
+                faction.setRoleDisplayName(roleName, ranksTag.getString(roleName));
+            }
+        }
+        if (factionTag.contains("TrustedPlayers")) {
+            ListTag trustedTag = factionTag.getList("TrustedPlayers", Tag.TAG_STRING);
+            for (Tag trustedEntry : trustedTag) {
+                faction.addTrustedPlayer(UUID.fromString(trustedEntry.getAsString()));
+            }
+        }
+        for (Tag memberTag : members) {
+            CompoundTag member = (CompoundTag) memberTag;
+            UUID memberId = member.getUUID("Id");
+            String role = member.getString("Role");
+            if (merge && playerFaction.containsKey(memberId)) {
+                McProtectorMod.LOGGER.warn("Dropping {} from faction {} while merging dimension data; already in {}",
+                    memberId, name, playerFaction.get(memberId));
+                continue;
+            }
+            faction.setRole(memberId, role);
+            playerFaction.put(memberId, id);
+        }
+        faction.setRole(owner, Faction.ROLE_OWNER);
+        CompoundTag permissionsTag = factionTag.getCompound("Permissions");
+        if (!permissionsTag.isEmpty()) {
+            for (String roleName : permissionsTag.getAllKeys()) {
+                ListTag permsList = permissionsTag.getList(roleName, Tag.TAG_STRING);
+                EnumSet<FactionPermission> perms = EnumSet.noneOf(FactionPermission.class);
+                for (Tag permTag : permsList) {
+                    perms.add(FactionPermission.valueOf(permTag.getAsString()));
+                }
+                String normalizedRole = Faction.normalizeRoleName(roleName);
+                if (!faction.hasRole(normalizedRole)) {
+                    faction.addRole(normalizedRole, normalizedRole);
+                }
+                faction.setPermissions(normalizedRole, perms);
+            }
+        }
+        if (factionTag.contains("Rules")) {
+            ListTag rulesTag = factionTag.getList("Rules", Tag.TAG_STRING);
+            for (Tag ruleTag : rulesTag) {
+                faction.addRule(ruleTag.getAsString());
+            }
+        }
+        if (factionTag.contains("RelationPermissions")) {
+            CompoundTag relationPermissionsTag = factionTag.getCompound("RelationPermissions");
+            for (FactionRelation relation : FactionRelation.values()) {
+                if (!relationPermissionsTag.contains(relation.name())) {
+                    continue;
+                }
+                ListTag permsList = relationPermissionsTag.getList(relation.name(), Tag.TAG_STRING);
+                EnumSet<FactionPermission> perms = EnumSet.noneOf(FactionPermission.class);
+                for (Tag permTag : permsList) {
+                    perms.add(FactionPermission.valueOf(permTag.getAsString()));
+                }
+                faction.setRelationPermissions(relation, perms);
+            }
+        }
+        return faction;
+    }
+
+    private UUID pickSuccessor(ListTag members, UUID formerOwner) {
+        UUID successor = SYSTEM_OWNER;
+        for (Tag memberTag : members) {
+            CompoundTag member = (CompoundTag) memberTag;
+            UUID memberId = member.getUUID("Id");
+            if (memberId.equals(formerOwner) || playerFaction.containsKey(memberId)) {
+                continue;
+            }
+            if (Faction.ROLE_OFFICER.equals(Faction.normalizeRoleName(member.getString("Role")))) {
+                return memberId;
+            }
+            if (SYSTEM_OWNER.equals(successor)) {
+                successor = memberId;
+            }
+        }
+        return successor;
+    }
+
+    private static CompoundTag writeFaction(Faction faction) {
+        CompoundTag factionTag = new CompoundTag();
+        factionTag.putUUID("Id", faction.getId());
+        factionTag.putUUID("Owner", faction.getOwner());
+        factionTag.putString("Name", faction.getName());
+        factionTag.putString("Color", faction.getColorName());
+        factionTag.putString("Motd", faction.getMotd());
+        factionTag.putString("Description", faction.getDescription());
+        factionTag.putString("BannerColor", faction.getBannerColor());
+        factionTag.putString("ProtectionTier", faction.getProtectionTier().name());
+        ListTag rolesTag = new ListTag();
+        for (Map.Entry<String, String> entry : faction.getRoleDisplayNames().entrySet()) {
+            CompoundTag roleTag = new CompoundTag();
+            roleTag.putString("Name", entry.getKey());
+            roleTag.putString("Display", entry.getValue());
+            rolesTag.add(roleTag);
+        }
+        factionTag.put("Roles", rolesTag);
+        ListTag trustedTag = new ListTag();
+        for (UUID trusted : faction.getTrustedPlayers()) {
+            trustedTag.add(net.minecraft.nbt.StringTag.valueOf(trusted.toString()));
+        }
+        factionTag.put("TrustedPlayers", trustedTag);
+        ListTag membersTag = new ListTag();
+        for (Map.Entry<UUID, String> member : faction.getMembers().entrySet()) {
+            CompoundTag memberTag = new CompoundTag();
+            memberTag.putUUID("Id", member.getKey());
+            memberTag.putString("Role", member.getValue());
+            membersTag.add(memberTag);
+        }
+        factionTag.put("Members", membersTag);
+        CompoundTag permissionsTag = new CompoundTag();
+        for (Map.Entry<String, EnumSet<FactionPermission>> entry : faction.getPermissions().entrySet()) {
+            ListTag permsList = new ListTag();
+            for (FactionPermission permission : entry.getValue()) {
+                permsList.add(net.minecraft.nbt.StringTag.valueOf(permission.name()));
+            }
+            permissionsTag.put(entry.getKey(), permsList);
+        }
+        factionTag.put("Permissions", permissionsTag);
+        ListTag rulesTag = new ListTag();
+        for (String rule : faction.getRules()) {
+            rulesTag.add(net.minecraft.nbt.StringTag.valueOf(rule));
+        }
+        factionTag.put("Rules", rulesTag);
+        CompoundTag relationPermissionsTag = new CompoundTag();
+        for (Map.Entry<FactionRelation, EnumSet<FactionPermission>> entry : faction.getRelationPermissions().entrySet()) {
+            ListTag permsList = new ListTag();
+            for (FactionPermission permission : entry.getValue()) {
+                permsList.add(net.minecraft.nbt.StringTag.valueOf(permission.name()));
+            }
+            relationPermissionsTag.put(entry.getKey().name(), permsList);
+        }
+        factionTag.put("RelationPermissions", relationPermissionsTag);
+        return factionTag;
+    }
+
+    Optional<Faction> getFaction(UUID id) {
+        return Optional.ofNullable(factions.get(id));
+    }
+
+    Faction findFaction(UUID id) {
+        return factions.get(id);
+    }
+
+    Map<UUID, Faction> getFactions() {
+        return Collections.unmodifiableMap(factions);
+    }
+
+    Optional<Faction> findFactionByName(String name) {
+        for (UUID factionId : nameIndex.find(name)) {
+            Faction faction = factions.get(factionId);
+            if (faction != null) {
+                return Optional.of(faction);
+            }
+        }
+        return Optional.empty();
+    }
+
+    boolean hasSimilarFactionName(String name, UUID excludedFactionId) {
+        return nameIndex.hasSimilar(name, excludedFactionId);
+    }
+
+    List<String> suggestFactionNames(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (UUID factionId : nameIndex.matchingPrefix(prefix)) {
+            Faction faction = factions.get(factionId);
+            if (faction != null) {
+                names.add(faction.getName().trim());
+            }
+        }
+        return names;
+    }
+
+    boolean renameFaction(UUID factionId, String newName) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return false;
+        }
+        String trimmed = newName == null ? "" : newName.trim();
+        if (trimmed.isEmpty()) {
+            return false;
+        }
+        if (hasSimilarFactionName(trimmed, factionId)) {
+            return false;
+        }
+        nameIndex.remove(factionId, faction.getName());
+        faction.setName(trimmed);
+        nameIndex.add(factionId, trimmed);
+        if (journal != null) {
+            journal.factionRename(factionId, trimmed);
+        }
+        markDirty();
+        return true;
+    }
+
+    Optional<Faction> getFactionByPlayer(UUID playerId) {
+        UUID factionId = playerFaction.get(playerId);
+        if (factionId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(factions.get(factionId));
+    }
+
+    Optional<UUID> getFactionIdByPlayer(UUID playerId) {
+        return Optional.ofNullable(playerFaction.get(playerId));
+    }
+
+    UUID findFactionId(UUID playerId) {
+        return playerFaction.get(playerId);
+    }
+
+    Faction createFaction(String name, Player owner) {
+        UUID id = UUID.randomUUID();
+        Faction faction = new Faction(id, name, owner.getUUID());
+        factions.put(id, faction);
+        nameIndex.add(id, name);
+        track(faction);
+        playerFaction.put(owner.getUUID(), id);
+        if (journal != null) {
+            journal.factionCreate(id, name, owner.getUUID());
+        }
+        markDirty();
+        return faction;
+    }
+
+    Faction createSystemFaction(String name) {
+        UUID id = UUID.randomUUID();
+        UUID ownerId = SYSTEM_OWNER;
+        Faction faction = new Faction(id, name, ownerId);
+        factions.put(id, faction);
+        nameIndex.add(id, name);
+        track(faction);
+        if (journal != null) {
+            journal.factionCreate(id, name, ownerId);
+        }
+        markDirty();
+        return faction;
+    }
+
+    boolean addMember(UUID factionId, UUID playerId, String role) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return false;
+        }
+        if (!faction.hasRole(role)) {
+            return false;
+        }
+        faction.setRole(playerId, role);
+        playerFaction.put(playerId, factionId);
+        if (pendingInvites.remove(playerId) != null) {
+            inviteExpiry.cancel(playerId);
+        }
+        if (journal != null) {
+            journal.memberSet(factionId, playerId, role);
+        }
+        markDirty();
+        return true;
+    }
+
+    boolean removeMember(UUID playerId) {
+        UUID factionId = playerFaction.remove(playerId);
+        if (factionId == null) {
+            return false;
+        }
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return false;
+        }
+        faction.removeMember(playerId);
+        if (journal != null) {
+            journal.memberRemove(playerId);
+        }
+        markDirty();
+        return true;
+    }
+
+    void invitePlayer(UUID playerId, UUID factionId) {
+        long expiresAt = Instant.now().plus(Duration.ofMinutes(FactionConfig.SERVER.inviteExpirationMinutes.get())).toEpochMilli();
+        pendingInvites.put(playerId, new FactionInvite(factionId, expiresAt));
+        inviteExpiry.schedule(playerId, expiresAt + 1);
+        markDirty();
+    }
+
+    Optional<FactionInvite> getInvite(UUID playerId) {
+        FactionInvite invite = pendingInvites.get(playerId);
+        if (invite == null) {
+            return Optional.empty();
+        }
+        if (invite.expiresAt() < System.currentTimeMillis()) {
+            pendingInvites.remove(playerId);
+            inviteExpiry.cancel(playerId);
+            markDirty();
+            return Optional.empty();
+        }
+        return Optional.of(invite);
+    }
+
+    Map<UUID, FactionInvite> getInvitesForFaction(UUID factionId) {
+        Map<UUID, FactionInvite> invites = new HashMap<>();
+        for (Map.Entry<UUID, FactionInvite> entry : pendingInvites.entrySet()) {
+            if (factionId.equals(entry.getValue().factionId())) {
+                invites.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return invites;
+    }
+
+    void clearInvite(UUID playerId) {
+        if (pendingInvites.remove(playerId) != null) {
+            inviteExpiry.cancel(playerId);
+            markDirty();
+        }
+    }
+
+    void inviteVassal(UUID overlordId, UUID vassalId) {
+        long expiresAt = Instant.now().plus(Duration.ofMinutes(FactionConfig.SERVER.inviteExpirationMinutes.get())).toEpochMilli();
+        pendingVassalInvites.put(vassalId, new VassalInvite(overlordId, expiresAt));
+        vassalInviteExpiry.schedule(vassalId, expiresAt + 1);
+        markDirty();
+    }
+
+    void inviteAlly(UUID proposerId, UUID targetId) {
+        long expiresAt = Instant.now().plus(Duration.ofMinutes(FactionConfig.SERVER.inviteExpirationMinutes.get())).toEpochMilli();
+        pendingAllyInvites.put(targetId, new AllyInvite(proposerId, expiresAt));
+        allyInviteExpiry.schedule(targetId, expiresAt + 1);
+        markDirty();
+    }
+
+    Optional<VassalInvite> getVassalInvite(UUID vassalId) {
+        VassalInvite invite = pendingVassalInvites.get(vassalId);
+        if (invite == null) {
+            return Optional.empty();
+        }
+        if (invite.expiresAt() < System.currentTimeMillis()) {
+            pendingVassalInvites.remove(vassalId);
+            vassalInviteExpiry.cancel(vassalId);
+            markDirty();
+            return Optional.empty();
+        }
+        return Optional.of(invite);
+    }
+
+    void clearVassalInvite(UUID vassalId) {
+        if (pendingVassalInvites.remove(vassalId) != null) {
+            vassalInviteExpiry.cancel(vassalId);
+            markDirty();
+        }
+    }
+
+    Optional<AllyInvite> getAllyInvite(UUID targetId) {
+        AllyInvite invite = pendingAllyInvites.get(targetId);
+        if (invite == null) {
+            return Optional.empty();
+        }
+        if (invite.expiresAt() < System.currentTimeMillis()) {
+            pendingAllyInvites.remove(targetId);
+            allyInviteExpiry.cancel(targetId);
+            markDirty();
+            return Optional.empty();
+        }
+        return Optional.of(invite);
+    }
+
+    void clearAllyInvite(UUID targetId) {
+        if (pendingAllyInvites.remove(targetId) != null) {
+            allyInviteExpiry.cancel(targetId);
+            markDirty();
+        }
+    }
+
+    Optional<UUID> getOverlord(UUID vassalId) {
+        VassalContract contract = vassalContracts.get(vassalId);
+        if (contract == null) {
+            return Optional.empty();
+        }
+        return Optional.of(contract.overlordId());
+    }
+
+    boolean hasActiveBreakaway(UUID vassalId) {
+        return vassalBreakaways.containsKey(vassalId);
+    }
+
+    Map<UUID, VassalBreakaway> getActiveBreakaways() {
+        return Collections.unmodifiableMap(vassalBreakaways);
+    }
+
+    Map<UUID, VassalContract> getVassalContracts() {
+        return Collections.unmodifiableMap(vassalContracts);
+    }
+
+    boolean isVassalRelationship(UUID factionId, UUID otherId) {
+        Optional<UUID> overlord = getOverlord(factionId);
+        if (overlord.isPresent() && overlord.get().equals(otherId)) {
+            return true;
+        }
+        Optional<UUID> otherOverlord = getOverlord(otherId);
+        return otherOverlord.isPresent() && otherOverlord.get().equals(factionId);
+    }
+
+    boolean createVassalContract(UUID overlordId, UUID vassalId) {
+        if (vassalContracts.containsKey(vassalId)) {
+            return false;
+        }
+        long startedAt = System.currentTimeMillis();
+        vassalContracts.put(vassalId, new VassalContract(overlordId, startedAt));
+        if (journal != null) {
+            journal.vassalContract(vassalId, overlordId, startedAt);
+        }
+        markDirty();
+        return true;
+    }
+
+    boolean releaseVassal(UUID overlordId, UUID vassalId) {
+        VassalContract contract = vassalContracts.get(vassalId);
+        if (contract == null || !contract.overlordId().equals(overlordId)) {
+            return false;
+        }
+        vassalContracts.remove(vassalId);
+        vassalBreakaways.remove(vassalId);
+        if (journal != null) {
+            journal.vassalContract(vassalId, null, 0L);
+            journal.vassalBreakaway(vassalId, null, 0, 0, 0L);
+        }
+        markDirty();
+        return true;
+    }
+
+    void startVassalBreakaway(UUID vassalId, UUID overlordId, int requiredClaims) {
+        long startedAt = System.currentTimeMillis();
+        vassalBreakaways.put(vassalId, new VassalBreakaway(overlordId, requiredClaims, 0, startedAt));
+        if (journal != null) {
+            journal.vassalBreakaway(vassalId, overlordId, requiredClaims, 0, startedAt);
+        }
+        markDirty();
+    }
+
+    boolean recordVassalBreakawayCapture(UUID vassalId, UUID overlordId) {
+        VassalBreakaway breakaway = vassalBreakaways.get(vassalId);
+        if (breakaway == null || !breakaway.overlordId().equals(overlordId)) {
+            return false;
+        }
+        int captured = breakaway.capturedClaims() + 1;
+        int required = breakaway.requiredClaims();
+        if (captured >= required) {
+            vassalBreakaways.remove(vassalId);
+            vassalContracts.remove(vassalId);
+            if (journal != null) {
+                journal.vassalBreakaway(vassalId, null, 0, 0, 0L);
+                journal.vassalContract(vassalId, null, 0L);
+            }
+            markDirty();
+            return true;
+        }
+        vassalBreakaways.put(vassalId, new VassalBreakaway(overlordId, required, captured, breakaway.startedAt()));
+        if (journal != null) {
+            journal.vassalBreakaway(vassalId, overlordId, required, captured, breakaway.startedAt());
+        }
+        markDirty();
+        return false;
+    }
+
+    void cancelVassalBreakaway(UUID factionId, UUID targetId) {
+        VassalBreakaway breakaway = vassalBreakaways.get(factionId);
+        if (breakaway != null && breakaway.overlordId().equals(targetId)) {
+            vassalBreakaways.remove(factionId);
+            if (journal != null) {
+                journal.vassalBreakaway(factionId, null, 0, 0, 0L);
+            }
+            markDirty();
+        }
+    }
+
+    boolean isFactionOnline(ServerLevel level, UUID factionId) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return false;
+        }
+        for (ServerPlayer player : level.getServer().getPlayerList().getPlayers()) {
+            if (faction.getMembers().containsKey(player.getUUID())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void disbandFaction(UUID factionId) {
+        Faction faction = factions.remove(factionId);
+        if (faction == null) {
+            return;
+        }
+        nameIndex.remove(factionId, faction.getName());
+        for (UUID member : faction.getMembers().keySet()) {
+            playerFaction.remove(member);
+            pendingInvites.remove(member);
+        }
+        pendingVassalInvites.remove(factionId);
+        pendingAllyInvites.remove(factionId);
+        claimBoosts.remove(factionId);
+        relations.remove(factionHandles.find(factionId));
+        vassalContracts.remove(factionId);
+        vassalBreakaways.remove(factionId);
+        pendingVassalInvites.entrySet().removeIf(entry -> entry.getValue().overlordId().equals(factionId));
+        pendingAllyInvites.entrySet().removeIf(entry -> entry.getValue().proposerId().equals(factionId));
+        vassalContracts.entrySet().removeIf(entry -> entry.getValue().overlordId().equals(factionId));
+        vassalBreakaways.entrySet().removeIf(entry -> entry.getValue().overlordId().equals(factionId));
+        wars.removeFaction(factionId);
+        if (journal != null) {
+            journal.factionDisband(factionId);
+        }
+        for (FactionData layer : layers) {
+            layer.removeFactionClaims(factionId);
+        }
+        factionHandles.release(factionId);
+        markDirty();
+    }
+
+    int getClaimCount(UUID factionId) {
+        int claims = 0;
+        for (FactionData layer : layers) {
+            claims += layer.getClaimCount(factionId);
+        }
+        return claims;
+    }
+
+    int getMaxClaims(UUID factionId) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return 0;
+        }
+        int base = FactionConfig.SERVER.baseClaims.get();
+        int perMember = FactionConfig.SERVER.claimsPerMember.get();
+        int levelBonus = (getFactionLevel(factionId) - 1) * FactionConfig.SERVER.bonusClaimsPerLevel.get();
+        int boost = claimBoosts.getOrDefault(factionId, 0);
+        return Math.max(base, base + (faction.getMemberCount() * perMember) + levelBonus + Math.max(0, boost));
+    }
+
+    void setRelation(UUID source, UUID target, FactionRelation relation) {
+        int sourceHandle = factionHandles.acquire(source);
+        int targetHandle = factionHandles.acquire(target);
+        relations.set(sourceHandle, targetHandle, relation);
+        relations.set(targetHandle, sourceHandle, relation);
+        if (relation != FactionRelation.WAR) {
+            wars.remove(source, target);
+        }
+        if (journal != null) {
+            journal.relationSet(source, target, relation);
+        }
+        markDirty();
+    }
+
+    void clearRelation(UUID source, UUID target) {
+        int sourceHandle = factionHandles.find(source);
+        int targetHandle = factionHandles.find(target);
+        if (sourceHandle != HandleRegistry.NO_HANDLE && targetHandle != HandleRegistry.NO_HANDLE) {
+            relations.clear(sourceHandle, targetHandle);
+            relations.clear(targetHandle, sourceHandle);
+        }
+        wars.remove(source, target);
+        if (journal != null) {
+            journal.relationSet(source, target, null);
+        }
+        markDirty();
+    }
+
+    FactionRelation getRelation(UUID source, UUID target) {
+        return relations.get(factionHandles.find(source), factionHandles.find(target));
+    }
+
+    List<UUID> getFactionsWithRelation(UUID factionId, FactionRelation relation) {
+        BitSet targets = relations.targets(factionHandles.find(factionId), relation);
+        List<UUID> result = new ArrayList<>(targets.cardinality());
+        for (int handle = targets.nextSetBit(0); handle >= 0; handle = targets.nextSetBit(handle + 1)) {
+            UUID targetId = factionHandles.resolve(handle);
+            if (targetId != null && !targetId.equals(factionId)) {
+                result.add(targetId);
+            }
+        }
+        return result;
+    }
+
+    boolean isAtWar(UUID source, UUID target) {
+        return getRelation(source, target) == FactionRelation.WAR;
+    }
+
+    boolean isFactionAtWar(UUID factionId) {
+        return relations.hasAny(factionHandles.find(factionId), FactionRelation.WAR);
+    }
+
+    long recordWarDeclaration(UUID source, UUID target) {
+        long now = System.currentTimeMillis();
+        WarRegistry.WarState state = wars.getOrCreate(source, target);
+        state.declaredAt = now;
+        state.declaredBy = source;
+        state.endRequest = null;
+        if (journal != null) {
+            journal.warState(source, target, now, source);
+        }
+        markDirty();
+        return now;
+    }
+
+    Optional<Long> getWarDeclaredAt(UUID source, UUID target) {
+        WarRegistry.WarState state = wars.get(source, target);
+        return Optional.ofNullable(state == null ? null : state.declaredAt);
+    }
+
+    Optional<UUID> getWarDeclarer(UUID source, UUID target) {
+        WarRegistry.WarState state = wars.get(source, target);
+        return Optional.ofNullable(state == null ? null : state.declaredBy);
+    }
+
+    Optional<WarEndRequest> getWarEndRequest(UUID source, UUID target) {
+        WarRegistry.WarState state = wars.get(source, target);
+        WarEndRequest request = state == null ? null : state.endRequest;
+        if (request == null) {
+            return Optional.empty();
+        }
+        if (request.createdAt() + WAR_END_REQUEST_MILLIS < System.currentTimeMillis()) {
+            state.endRequest = null;
+            wars.compact(source, target);
+            warEndExpiry.cancel(WarRegistry.WarPair.of(source, target));
+            markDirty();
+            return Optional.empty();
+        }
+        return Optional.of(request);
+    }
+
+    void requestWarEnd(UUID source, UUID target, UUID requesterFactionId) {
+        long now = System.currentTimeMillis();
+        wars.getOrCreate(source, target).endRequest = new WarEndRequest(requesterFactionId, now);
+        warEndExpiry.schedule(WarRegistry.WarPair.of(source, target), now + WAR_END_REQUEST_MILLIS + 1);
+        markDirty();
+    }
+
+    void clearWarEndRequest(UUID source, UUID target) {
+        WarRegistry.WarState state = wars.get(source, target);
+        if (state != null && state.endRequest != null) {
+            state.endRequest = null;
+            wars.compact(source, target);
+            warEndExpiry.cancel(WarRegistry.WarPair.of(source, target));
+            markDirty();
+        }
+    }
+
+    void clearWarState(UUID source, UUID target) {
+        wars.remove(source, target);
+        if (journal != null) {
+            journal.warState(source, target, null, null);
+        }
+        markDirty();
+    }
+
+    List<TimedStateExpiry> expireTimedState(long now) {
+        List<TimedStateExpiry> expired = new ArrayList<>();
+        inviteExpiry.advance(now, playerId -> {
+            FactionInvite invite = pendingInvites.get(playerId);
+            if (invite != null && invite.expiresAt() < now) {
+                pendingInvites.remove(playerId);
+                expired.add(new TimedStateExpiry(TimedStateKind.FACTION_INVITE, invite.factionId(), playerId));
+            }
+        });
+        vassalInviteExpiry.advance(now, vassalId -> {
+            VassalInvite invite = pendingVassalInvites.get(vassalId);
+            if (invite != null && invite.expiresAt() < now) {
+                pendingVassalInvites.remove(vassalId);
+                expired.add(new TimedStateExpiry(TimedStateKind.VASSAL_INVITE, invite.overlordId(), vassalId));
+            }
+        });
+        allyInviteExpiry.advance(now, targetId -> {
+            AllyInvite invite = pendingAllyInvites.get(targetId);
+            if (invite != null && invite.expiresAt() < now) {
+                pendingAllyInvites.remove(targetId);
+                expired.add(new TimedStateExpiry(TimedStateKind.ALLY_INVITE, invite.proposerId(), targetId));
+            }
+        });
+        warEndExpiry.advance(now, pair -> {
+            WarRegistry.WarState state = wars.get(pair.first(), pair.second());
+            if (state != null && state.endRequest != null && state.endRequest.createdAt() + WAR_END_REQUEST_MILLIS < now) {
+                UUID requesterId = state.endRequest.requesterFactionId();
+                state.endRequest = null;
+                wars.compact(pair.first(), pair.second());
+                expired.add(new TimedStateExpiry(TimedStateKind.WAR_END_REQUEST, requesterId, pair.other(requesterId)));
+            }
+        });
+        if (!expired.isEmpty()) {
+            markDirty();
+        }
+        return expired;
+    }
+
+    int getFactionLevel(UUID factionId) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return 1;
+        }
+        int membersPerLevel = Math.max(1, FactionConfig.SERVER.membersPerLevel.get());
+        int level = 1 + Math.max(0, (faction.getMemberCount() - 1) / membersPerLevel);
+        return Math.min(level, FactionConfig.SERVER.maxFactionLevel.get());
+    }
+
+    boolean addTrustedPlayer(UUID factionId, UUID playerId) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return false;
+        }
+        faction.addTrustedPlayer(playerId);
+        markDirty();
+        return true;
+    }
+
+    boolean removeTrustedPlayer(UUID factionId, UUID playerId) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return false;
+        }
+        faction.removeTrustedPlayer(playerId);
+        markDirty();
+        return true;
+    }
+
+    Set<UUID> getTrustedPlayers(UUID factionId) {
+        Faction faction = factions.get(factionId);
+        if (faction == null) {
+            return Set.of();
+        }
+        return new HashSet<>(faction.getTrustedPlayers());
+    }
+
+    boolean isAutoClaimEnabled(UUID playerId) {
+        return autoClaimSettings.getOrDefault(playerId, false);
+    }
+
+    void setAutoClaimEnabled(UUID playerId, boolean enabled) {
+        autoClaimSettings.put(playerId, enabled);
+        markDirty();
+    }
+
+    boolean isBorderEnabled(UUID playerId) {
+        return borderSettings.getOrDefault(playerId, false);
+    }
+
+    void setBorderEnabled(UUID playerId, boolean enabled) {
+        borderSettings.put(playerId, enabled);
+        markDirty();
+    }
+
+    int getClaimBoost(UUID factionId) {
+        return claimBoosts.getOrDefault(factionId, 0);
+    }
+
+    void setClaimBoost(UUID factionId, int boost) {
+        if (boost <= 0) {
+            if (claimBoosts.remove(factionId) != null) {
+                if (journal != null) {
+                    journal.claimBoost(factionId, 0);
+                }
+                markDirty();
+            }
+            return;
+        }
+        claimBoosts.put(factionId, boost);
+        if (journal != null) {
+            journal.claimBoost(factionId, boost);
+        }
+        markDirty();
+    }
+
+    Optional<FactionHome> getFactionHome(UUID factionId) {
+        return Optional.ofNullable(factionHomes.get(factionId));
+    }
+
+    void setFactionHome(UUID factionId, String dimension, BlockPos pos) {
+        factionHomes.put(factionId, new FactionHome(dimension, pos));
+        if (journal != null) {
+            journal.homeSet(factionId, dimension, pos.asLong());
+        }
+        markDirty();
+    }
+
+    boolean canUseProtectionTier(UUID factionId, FactionProtectionTier tier) {
+        if (tier == FactionProtectionTier.STRICT) {
+            return getFactionLevel(factionId) >= FactionConfig.SERVER.strictProtectionMinLevel.get();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package com.mcprotector.data;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+final class HandleRegistry {
+    static final int NO_HANDLE = -1;
+    private final Map<UUID, Integer> handles = new HashMap<>();
+    private final List<UUID> ids = new ArrayList<>();
+    private final IntArrayList free = new IntArrayList();
+
+    int acquire(UUID id) {
+        Integer existing = handles.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        int handle;
+        if (free.isEmpty()) {
+            handle = ids.size();
+            ids.add(id);
+        } else {
+            handle = free.removeInt(free.size() - 1);
+            ids.set(handle, id);
+        }
+        handles.put(id, handle);
+        return handle;
+    }
+
+    void release(UUID id) {
+        Integer handle = handles.remove(id);
+        if (handle != null) {
+            ids.set(handle, null);
+            free.add(handle.intValue());
+        }
+    }
+
+    int find(UUID id) {
+        if (id == null) {
+            return NO_HANDLE;
+        }
+        Integer handle = handles.get(id);
+        return handle == null ? NO_HANDLE : handle;
+    }
+
+    UUID resolve(int handle) {
+        if (handle < 0 || handle >= ids.size()) {
+            return null;
+        }
+        return ids.get(handle);
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    void clear() {
+        handles.clear();
+        ids.clear();
+        free.clear();
+    }
+}
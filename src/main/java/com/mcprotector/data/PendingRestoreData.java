@@ -0,0 +1,190 @@
+package com.mcprotector.data;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderGetter;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PendingRestoreData extends SavedData {
+    private static final String DATA_NAME = "mcprotector_restores";
+    private static final SavedData.Factory<PendingRestoreData> FACTORY =
+        new SavedData.Factory<>(PendingRestoreData::new, PendingRestoreData::load);
+    private static final Map<ServerLevel, PendingRestoreData> LOADED = new IdentityHashMap<>();
+
+    private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+    private final LongLinkedOpenHashSet ready = new LongLinkedOpenHashSet();
+    private final Long2ObjectOpenHashMap<LongOpenHashSet> waitingByChunk = new Long2ObjectOpenHashMap<>();
+
+    public static PendingRestoreData get(ServerLevel level) {
+        PendingRestoreData data = LOADED.get(level);
+        if (data == null) {
+            data = level.getDataStorage().computeIfAbsent(FACTORY, DATA_NAME);
+            LOADED.put(level, data);
+        }
+        return data;
+    }
+
+    public static void onLevelLoad(ServerLevel level) {
+        get(level);
+    }
+
+    public static void onLevelUnload(ServerLevel level) {
+        LOADED.remove(level);
+    }
+
+    public void queue(BlockPos pos, BlockState state) {
+        long sectionKey = SectionPos.asLong(pos);
+        Long2ObjectOpenHashMap<BlockState> restores = sections.get(sectionKey);
+        if (restores == null) {
+            restores = new Long2ObjectOpenHashMap<>();
+            sections.put(sectionKey, restores);
+            ready.add(sectionKey);
+        }
+        restores.put(pos.asLong(), state);
+        setDirty();
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    public void onChunkLoad(ChunkPos chunkPos) {
+        LongOpenHashSet waiting = waitingByChunk.remove(chunkPos.toLong());
+        if (waiting != null) {
+            ready.addAll(waiting);
+        }
+    }
+
+    public int apply(ServerLevel level, long deadlineNanos) {
+        int applied = 0;
+        boolean first = true;
+        while (!ready.isEmpty() && (first || System.nanoTime() < deadlineNanos)) {
+            long sectionKey = ready.removeFirstLong();
+            Long2ObjectOpenHashMap<BlockState> restores = sections.get(sectionKey);
+            if (restores == null) {
+                continue;
+            }
+            int chunkX = SectionPos.x(sectionKey);
+            int chunkZ = SectionPos.z(sectionKey);
+            LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+            if (chunk == null) {
+                waitingByChunk.computeIfAbsent(ChunkPos.asLong(chunkX, chunkZ), key -> new LongOpenHashSet()).add(sectionKey);
+                continue;
+            }
+            first = false;
+            sections.remove(sectionKey);
+            applied += applySection(level, restores);
+        }
+        if (applied > 0) {
+            setDirty();
+        }
+        return applied;
+    }
+
+    private static int applySection(ServerLevel level, Long2ObjectOpenHashMap<BlockState> restores) {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        List<BlockPos> changed = new ArrayList<>(restores.size());
+        for (Long2ObjectMap.Entry<BlockState> entry : restores.long2ObjectEntrySet()) {
+            pos.set(entry.getLongKey());
+            if (level.setBlock(pos, entry.getValue(), Block.UPDATE_CLIENTS)) {
+                changed.add(pos.immutable());
+            }
+        }
+        for (BlockPos changedPos : changed) {
+            BlockState state = level.getBlockState(changedPos);
+            level.blockUpdated(changedPos, state.getBlock());
+            if (state.hasAnalogOutputSignal()) {
+                level.updateNeighbourForOutputSignal(changedPos, state.getBlock());
+            }
+        }
+        return changed.size();
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag, HolderLookup.Provider provider) {
+        ListTag sectionsTag = new ListTag();
+        for (Long2ObjectMap.Entry<Long2ObjectOpenHashMap<BlockState>> section : sections.long2ObjectEntrySet()) {
+            Long2ObjectOpenHashMap<BlockState> restores = section.getValue();
+            List<BlockState> palette = new ArrayList<>();
+            Object2IntOpenHashMap<BlockState> paletteIds = new Object2IntOpenHashMap<>();
+            paletteIds.defaultReturnValue(-1);
+            long[] positions = new long[restores.size()];
+            int[] states = new int[restores.size()];
+            int index = 0;
+            for (Long2ObjectMap.Entry<BlockState> entry : restores.long2ObjectEntrySet()) {
+                int id = paletteIds.getInt(entry.getValue());
+                if (id < 0) {
+                    id = palette.size();
+                    palette.add(entry.getValue());
+                    paletteIds.put(entry.getValue(), id);
+                }
+                positions[index] = entry.getLongKey();
+                states[index++] = id;
+            }
+            ListTag paletteTag = new ListTag();
+            for (BlockState state : palette) {
+                paletteTag.add(NbtUtils.writeBlockState(state));
+            }
+            CompoundTag sectionTag = new CompoundTag();
+            sectionTag.putLong("Section", section.getLongKey());
+            sectionTag.put("Palette", paletteTag);
+            sectionTag.put("Positions", new LongArrayTag(positions));
+            sectionTag.putIntArray("States", states);
+            sectionsTag.add(sectionTag);
+        }
+        tag.put("Sections", sectionsTag);
+        return tag;
+    }
+
+    private static PendingRestoreData load(CompoundTag tag, HolderLookup.Provider provider) {
+        PendingRestoreData data = new PendingRestoreData();
+        HolderGetter<Block> blocks = provider.lookupOrThrow(Registries.BLOCK);
+        ListTag sectionsTag = tag.getList("Sections", Tag.TAG_COMPOUND);
+        for (Tag entry : sectionsTag) {
+            CompoundTag sectionTag = (CompoundTag) entry;
+            ListTag paletteTag = sectionTag.getList("Palette", Tag.TAG_COMPOUND);
+            BlockState[] palette = new BlockState[paletteTag.size()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = NbtUtils.readBlockState(blocks, paletteTag.getCompound(i));
+            }
+            long[] positions = sectionTag.getLongArray("Positions");
+            int[] states = sectionTag.getIntArray("States");
+            int count = Math.min(positions.length, states.length);
+            if (count == 0) {
+                continue;
+            }
+            Long2ObjectOpenHashMap<BlockState> restores = new Long2ObjectOpenHashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                if (states[i] >= 0 && states[i] < palette.length) {
+                    restores.put(positions[i], palette[states[i]]);
+                }
+            }
+            long sectionKey = sectionTag.getLong("Section");
+            data.sections.put(sectionKey, restores);
+            data.ready.add(sectionKey);
+        }
+        return data;
+    }
+}
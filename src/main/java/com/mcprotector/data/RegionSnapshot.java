@@ -0,0 +1,48 @@
+package com.mcprotector.data;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+
+import java.util.UUID;
+
+record RegionSnapshot(long regionKey, long[] claimKeys, ClaimKind[] claimKinds, UUID[] claimOwners) {
+
+    boolean isEmpty() {
+        return claimKeys.length == 0;
+    }
+
+    CompoundTag encode(int dataVersion) {
+        if (isEmpty()) {
+            return null;
+        }
+        ClaimColumns claims = new ClaimColumns();
+        for (int i = 0; i < claimKeys.length; i++) {
+            claims.add(claimKeys[i], claimKinds[i], claimOwners[i]);
+        }
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("DataVersion", dataVersion);
+        claims.writeTo(tag);
+        return tag;
+    }
+
+    static CompoundTag writeAccessLogs(long chunkKey, FactionData.FactionAccessLog[] logs) {
+        CompoundTag logTag = new CompoundTag();
+        logTag.putLong("Chunk", chunkKey);
+        ListTag entries = new ListTag();
+        for (FactionData.FactionAccessLog log : logs) {
+            CompoundTag entryTag = new CompoundTag();
+            entryTag.putLong("Timestamp", log.timestamp());
+            entryTag.putUUID("PlayerId", log.playerId());
+            entryTag.putString("PlayerName", log.playerName());
+            entryTag.putString("Action", log.action());
+            entryTag.putBoolean("Allowed", log.allowed());
+            entryTag.putString("BlockName", log.blockName());
+            entryTag.putInt("X", log.pos().getX());
+            entryTag.putInt("Y", log.pos().getY());
+            entryTag.putInt("Z", log.pos().getZ());
+            entries.add(entryTag);
+        }
+        logTag.put("Entries", entries);
+        return logTag;
+    }
+}
@@ -0,0 +1,104 @@
+package com.mcprotector.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+final class RelationMatrix {
+    private final List<BitSet> allies = new ArrayList<>();
+    private final List<BitSet> wars = new ArrayList<>();
+
+    FactionRelation get(int source, int target) {
+        if (source < 0 || target < 0) {
+            return FactionRelation.NEUTRAL;
+        }
+        if (test(wars, source, target)) {
+            return FactionRelation.WAR;
+        }
+        return test(allies, source, target) ? FactionRelation.ALLY : FactionRelation.NEUTRAL;
+    }
+
+    void set(int source, int target, FactionRelation relation) {
+        row(allies, source).set(target, relation == FactionRelation.ALLY);
+        row(wars, source).set(target, relation == FactionRelation.WAR);
+    }
+
+    void clear(int source, int target) {
+        set(source, target, FactionRelation.NEUTRAL);
+    }
+
+    boolean hasAny(int source, FactionRelation relation) {
+        BitSet row = existingRow(relation, source);
+        return row != null && !row.isEmpty();
+    }
+
+    BitSet targets(int source, FactionRelation relation) {
+        BitSet row = existingRow(relation, source);
+        return row == null ? new BitSet() : (BitSet) row.clone();
+    }
+
+    void remove(int handle) {
+        if (handle < 0) {
+            return;
+        }
+        for (BitSet row : allies) {
+            row.clear(handle);
+        }
+        for (BitSet row : wars) {
+            row.clear(handle);
+        }
+        if (handle < allies.size()) {
+            allies.get(handle).clear();
+        }
+        if (handle < wars.size()) {
+            wars.get(handle).clear();
+        }
+    }
+
+    void forEach(Visitor visitor) {
+        visit(allies, FactionRelation.ALLY, visitor);
+        visit(wars, FactionRelation.WAR, visitor);
+    }
+
+    void clear() {
+        allies.clear();
+        wars.clear();
+    }
+
+    private BitSet existingRow(FactionRelation relation, int source) {
+        List<BitSet> rows = switch (relation) {
+            case ALLY -> allies;
+            case WAR -> wars;
+            case NEUTRAL -> null;
+        };
+        if (rows == null || source < 0 || source >= rows.size()) {
+            return null;
+        }
+        return rows.get(source);
+    }
+
+    private static boolean test(List<BitSet> rows, int source, int target) {
+        return source < rows.size() && rows.get(source).get(target);
+    }
+
+    private static BitSet row(List<BitSet> rows, int source) {
+        while (rows.size() <= source) {
+            rows.add(new BitSet());
+        }
+        return rows.get(source);
+    }
+
+    private static void visit(List<BitSet> rows, FactionRelation relation, Visitor visitor) {
+        for (int source = 0; source < rows.size(); source++) {
+            BitSet row = rows.get(source);
+            for (int target = row.nextSetBit(0); target >= 0; target = row.nextSetBit(target + 1)) {
+                visitor.accept(source, target, relation);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(int source, int target, FactionRelation relation);
+    }
+}
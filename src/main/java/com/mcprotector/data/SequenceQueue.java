@@ -0,0 +1,63 @@
+package com.mcprotector.data;
+
+final class SequenceQueue {
+    private long[] values;
+    private int head;
+    private int size;
+
+    SequenceQueue() {
+        values = new long[4];
+    }
+
+    void addLast(long value) {
+        if (size == values.length) {
+            long[] grown = new long[values.length << 1];
+            for (int i = 0; i < size; i++) {
+                grown[i] = get(i);
+            }
+            values = grown;
+            head = 0;
+        }
+        values[(head + size) & (values.length - 1)] = value;
+        size++;
+    }
+
+    long first() {
+        return values[head];
+    }
+
+    long last() {
+        return get(size - 1);
+    }
+
+    void removeFirst() {
+        head = (head + 1) & (values.length - 1);
+        size--;
+    }
+
+    long get(int index) {
+        return values[(head + index) & (values.length - 1)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int lowerBound(long value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
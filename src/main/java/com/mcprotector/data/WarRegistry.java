@@ -0,0 +1,97 @@
+package com.mcprotector.data;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+final class WarRegistry {
+    private final Map<WarPair, WarState> states = new HashMap<>();
+    private final Map<UUID, Set<WarPair>> byFaction = new HashMap<>();
+
+    WarState get(UUID source, UUID target) {
+        return states.get(WarPair.of(source, target));
+    }
+
+    WarState getOrCreate(UUID source, UUID target) {
+        WarPair pair = WarPair.of(source, target);
+        WarState state = states.get(pair);
+        if (state == null) {
+            state = new WarState();
+            states.put(pair, state);
+            byFaction.computeIfAbsent(pair.first(), key -> new HashSet<>()).add(pair);
+            byFaction.computeIfAbsent(pair.second(), key -> new HashSet<>()).add(pair);
+        }
+        return state;
+    }
+
+    boolean remove(UUID source, UUID target) {
+        return remove(WarPair.of(source, target));
+    }
+
+    void compact(UUID source, UUID target) {
+        WarPair pair = WarPair.of(source, target);
+        WarState state = states.get(pair);
+        if (state != null && state.isEmpty()) {
+            remove(pair);
+        }
+    }
+
+    void removeFaction(UUID factionId) {
+        Set<WarPair> pairs = byFaction.remove(factionId);
+        if (pairs == null) {
+            return;
+        }
+        for (WarPair pair : pairs) {
+            states.remove(pair);
+            unlink(pair.other(factionId), pair);
+        }
+    }
+
+    void forEach(BiConsumer<WarPair, WarState> consumer) {
+        states.forEach(consumer);
+    }
+
+    void clear() {
+        states.clear();
+        byFaction.clear();
+    }
+
+    private boolean remove(WarPair pair) {
+        if (states.remove(pair) == null) {
+            return false;
+        }
+        unlink(pair.first(), pair);
+        unlink(pair.second(), pair);
+        return true;
+    }
+
+    private void unlink(UUID factionId, WarPair pair) {
+        Set<WarPair> pairs = byFaction.get(factionId);
+        if (pairs != null && pairs.remove(pair) && pairs.isEmpty()) {
+            byFaction.remove(factionId);
+        }
+    }
+
+    record WarPair(UUID first, UUID second) {
+        static WarPair of(UUID source, UUID target) {
+            return source.compareTo(target) <= 0 ? new WarPair(source, target) : new WarPair(target, source);
+        }
+
+        UUID other(UUID factionId) {
+            return first.equals(factionId) ? second : first;
+        }
+    }
+
+    static final class WarState {
+        Long declaredAt;
+        UUID declaredBy;
+        FactionData.WarEndRequest endRequest;
+
+        boolean isEmpty() {
+            return declaredAt == null && declaredBy == null && endRequest == null;
+        }
+    }
+}
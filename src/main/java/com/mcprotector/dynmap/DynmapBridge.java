@@ -1,6 +1,7 @@
 package com.mcprotector.dynmap;
 
 import com.mcprotector.McProtectorMod;
+import com.mcprotector.data.ClaimKind;
 import com.mcprotector.data.Faction;
 import net.minecraft.world.level.ChunkPos;
 
@@ -103,16 +104,12 @@ public final class DynmapBridge {
         if (!available || markerApi == null) {
             return;
         }
-        for (Map.Entry<Long, java.util.UUID> entry : data.getClaims().entrySet()) {
-            ChunkPos chunkPos = new ChunkPos(entry.getKey());
-            Optional<Faction> faction = data.getFaction(entry.getValue());
-            updateMarker(chunkPos, faction, level.dimension().location().toString());
-        }
-        for (Map.Entry<Long, java.util.UUID> entry : data.getSafeZoneClaims().entrySet()) {
-            ChunkPos chunkPos = new ChunkPos(entry.getKey());
-            Optional<Faction> faction = data.getFaction(entry.getValue());
-            updateMarker(chunkPos, faction, level.dimension().location().toString());
-        }
+        String dimension = level.dimension().location().toString();
+        data.forEachClaim((chunkKey, kind, ownerId) -> {
+            if (kind != ClaimKind.PERSONAL) {
+                updateMarker(new ChunkPos(chunkKey), data.getFaction(ownerId), dimension);
+            }
+        });
     }
 
     private static void flushPendingUpdates() {
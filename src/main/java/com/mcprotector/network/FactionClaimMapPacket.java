@@ -2,6 +2,7 @@ package com.mcprotector.network;
 
 import com.mcprotector.McProtectorMod;
 import com.mcprotector.config.FactionConfig;
+import com.mcprotector.data.ClaimKind;
 import com.mcprotector.data.Faction;
 import com.mcprotector.data.FactionData;
 import com.mcprotector.data.FactionRelation;
@@ -50,46 +51,30 @@ public class FactionClaimMapPacket implements CustomPacketPayload {
         boolean fullSync = FactionConfig.SERVER.claimMapFullSync.get();
         Optional<UUID> playerFactionId = data.getFactionIdByPlayer(player.getUUID());
         List<ClaimEntry> entries = new ArrayList<>();
-        for (var entry : data.getClaims().entrySet()) {
-            ChunkPos chunkPos = new ChunkPos(entry.getKey());
-            if (!fullSync
-                && (Math.abs(chunkPos.x - center.x) > radius || Math.abs(chunkPos.z - center.z) > radius)) {
-                continue;
-            }
-            Optional<Faction> faction = data.getFaction(entry.getValue());
-            String factionName = faction.map(Faction::getName).orElse("Unknown");
-            String relation = playerFactionId
-                .map(id -> id.equals(entry.getValue()) ? "OWN" : data.getRelation(id, entry.getValue()).name())
-                .orElse(FactionRelation.NEUTRAL.name());
-            int color = resolveClaimColor(false, false, relation, faction);
-            entries.add(new ClaimEntry(chunkPos.x, chunkPos.z, factionName, relation, false, false, color));
-        }
-        for (var entry : data.getSafeZoneClaims().entrySet()) {
-            ChunkPos chunkPos = new ChunkPos(entry.getKey());
-            if (!fullSync
-                && (Math.abs(chunkPos.x - center.x) > radius || Math.abs(chunkPos.z - center.z) > radius)) {
-                continue;
+        var server = player.getServer();
+        FactionData.ClaimVisitor visitor = (chunkKey, kind, ownerId) -> {
+            int chunkX = ChunkPos.getX(chunkKey);
+            int chunkZ = ChunkPos.getZ(chunkKey);
+            if (kind == ClaimKind.PERSONAL) {
+                String ownerName = resolveName(server, ownerId);
+                String relation = ownerId.equals(player.getUUID()) ? "OWN" : "PERSONAL";
+                int color = resolveClaimColor(false, true, relation, Optional.empty());
+                entries.add(new ClaimEntry(chunkX, chunkZ, ownerName, relation, false, true, color));
+                return;
             }
-            Optional<Faction> faction = data.getFaction(entry.getValue());
+            boolean safeZone = kind == ClaimKind.SAFE_ZONE;
+            Optional<Faction> faction = data.getFaction(ownerId);
             String factionName = faction.map(Faction::getName).orElse("Unknown");
             String relation = playerFactionId
-                .map(id -> id.equals(entry.getValue()) ? "OWN" : data.getRelation(id, entry.getValue()).name())
+                .map(id -> id.equals(ownerId) ? "OWN" : data.getRelation(id, ownerId).name())
                 .orElse(FactionRelation.NEUTRAL.name());
-            int color = resolveClaimColor(true, false, relation, faction);
-            entries.add(new ClaimEntry(chunkPos.x, chunkPos.z, factionName, relation, true, false, color));
-        }
-        var server = player.getServer();
-        for (var entry : data.getPersonalClaims().entrySet()) {
-            ChunkPos chunkPos = new ChunkPos(entry.getKey());
-            if (!fullSync
-                && (Math.abs(chunkPos.x - center.x) > radius || Math.abs(chunkPos.z - center.z) > radius)) {
-                continue;
-            }
-            UUID ownerId = entry.getValue();
-            String ownerName = resolveName(server, ownerId);
-            String relation = ownerId.equals(player.getUUID()) ? "OWN" : "PERSONAL";
-            int color = resolveClaimColor(false, true, relation, Optional.empty());
-            entries.add(new ClaimEntry(chunkPos.x, chunkPos.z, ownerName, relation, false, true, color));
+            int color = resolveClaimColor(safeZone, false, relation, faction);
+            entries.add(new ClaimEntry(chunkX, chunkZ, factionName, relation, safeZone, false, color));
+        };
+        if (fullSync) {
+            data.forEachClaim(visitor);
+        } else {
+            data.forEachClaimInRadius(center, radius, visitor);
         }
         MapBackgroundMetadata background = resolveBackgroundMetadata(player.serverLevel());
         return new FactionClaimMapPacket(center.x, center.z, radius, entries, background);
@@ -5,6 +5,7 @@ import com.mcprotector.data.Faction;
 import com.mcprotector.data.FactionData;
 import com.mcprotector.data.FactionPermission;
 import com.mcprotector.data.FactionRelation;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
@@ -124,13 +125,10 @@ public class FactionStatePacket implements CustomPacketPayload {
             relationPermissions.add(new RelationPermissionEntry(entry.getKey().name(), perms));
         }
         List<RelationEntry> relations = new ArrayList<>();
-        for (Map.Entry<UUID, Faction> entry : data.getFactions().entrySet()) {
-            if (entry.getKey().equals(factionData.getId())) {
-                continue;
-            }
-            FactionRelation relation = data.getRelation(factionData.getId(), entry.getKey());
-            if (relation != FactionRelation.NEUTRAL) {
-                relations.add(new RelationEntry(entry.getKey(), entry.getValue().getName(), relation.name()));
+        for (FactionRelation relation : List.of(FactionRelation.ALLY, FactionRelation.WAR)) {
+            for (UUID targetId : data.getFactionsWithRelation(factionData.getId(), relation)) {
+                data.getFaction(targetId)
+                    .ifPresent(target -> relations.add(new RelationEntry(targetId, target.getName(), relation.name())));
             }
         }
         data.getOverlord(factionData.getId())
@@ -144,11 +142,9 @@ public class FactionStatePacket implements CustomPacketPayload {
                 .ifPresent(vassal -> relations.add(new RelationEntry(vassal.getId(), vassal.getName(), "VASSAL")));
         }
         List<ClaimEntry> claims = new ArrayList<>();
-        for (Map.Entry<Long, UUID> entry : data.getClaims().entrySet()) {
-            if (!entry.getValue().equals(factionData.getId())) {
-                continue;
-            }
-            long key = entry.getKey();
+        LongIterator claimKeys = data.getClaimKeys(factionData.getId()).iterator();
+        while (claimKeys.hasNext()) {
+            long key = claimKeys.nextLong();
             int x = (int) key;
             int z = (int) (key >> 32);
             claims.add(new ClaimEntry(x, z));
@@ -157,12 +153,11 @@ public class FactionStatePacket implements CustomPacketPayload {
         boolean canViewLogs = factionData.hasPermission(player.getUUID(), FactionPermission.MANAGE_SETTINGS)
             || player.hasPermissions(com.mcprotector.config.FactionConfig.SERVER.adminBypassPermissionLevel.get());
         if (canViewLogs) {
-            for (FactionData.FactionAccessLog log : data.getAccessLogs(player.blockPosition())) {
-                activityLogs.add(new ActivityLogEntry(log.timestamp(), log.playerName(), log.action(), log.allowed(), log.blockName()));
-            }
+            data.forEachAccessLog(player.blockPosition(), (timestamp, playerName, action, allowed, blockName) ->
+                activityLogs.add(new ActivityLogEntry(timestamp, playerName, action, allowed, blockName)));
         }
         String roleName = Optional.ofNullable(factionData.getRole(player.getUUID())).orElse("");
-        int claimCount = data.getClaimCount(factionData.getId());
+        int claimCount = data.getTotalClaimCount(factionData.getId());
         int maxClaims = data.getMaxClaims(factionData.getId());
         int factionLevel = data.getFactionLevel(factionData.getId());
         String protectionTier = factionData.getProtectionTier().name();
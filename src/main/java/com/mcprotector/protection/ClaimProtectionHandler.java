@@ -5,27 +5,28 @@ import com.mcprotector.data.Faction;
 import com.mcprotector.data.FactionData;
 import com.mcprotector.data.FactionPermission;
 import com.mcprotector.data.FactionRelation;
+import com.mcprotector.data.PendingRestoreData;
 import com.mcprotector.service.SiegeManager;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
-import net.minecraft.tags.BlockTags;
 import net.minecraft.world.MenuProvider;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.Mob;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.LevelAccessor;
 import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.BaseFireBlock;
-import net.minecraft.world.level.block.Blocks;
-import net.minecraft.world.level.block.DoorBlock;
-import net.minecraft.world.level.block.FenceGateBlock;
-import net.minecraft.world.level.block.TrapDoorBlock;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.neoforged.neoforge.event.entity.player.PlayerInteractEvent;
 import net.neoforged.neoforge.event.level.BlockEvent;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.level.BlockDropsEvent;
 import net.neoforged.neoforge.event.level.ExplosionEvent;
 import net.neoforged.neoforge.event.level.PistonEvent;
@@ -36,18 +37,25 @@ import net.neoforged.neoforge.event.entity.living.LivingDeathEvent;
 import net.neoforged.neoforge.event.entity.living.LivingIncomingDamageEvent;
 import net.neoforged.neoforge.event.entity.player.AttackEntityEvent;
 import net.neoforged.neoforge.event.tick.ServerTickEvent;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
+import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.common.util.BlockSnapshot;
 import net.neoforged.neoforge.common.util.FakePlayer;
 import net.neoforged.bus.api.EventPriority;
 import net.neoforged.bus.api.SubscribeEvent;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 public class ClaimProtectionHandler {
-    private static final String CREATE_MOD_ID = "create";
-    private final Map<ServerLevel, Map<BlockPos, BlockState>> pendingRestores = new HashMap<>();
+    private final CreateMachineIndex createMachines = new CreateMachineIndex(state -> isCreateBlock(state.getBlock()),
+        this::isCreateBlockEntity);
+
+    private enum ChunkVerdict {
+        ALLOW,
+        DENY,
+        CHECK_MACHINES
+    }
 
     private enum MutationAction {
         BLOCK_BREAK,
@@ -55,11 +63,64 @@ public class ClaimProtectionHandler {
         FLUID_PLACE
     }
 
+    @SubscribeEvent
+    public void onServerStarting(ServerStartingEvent event) {
+        ProtectionTraits.rebuild();
+    }
+
+    @SubscribeEvent
+    public void onTagsUpdated(TagsUpdatedEvent event) {
+        ProtectionTraits.rebuild();
+    }
+
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getLevel() instanceof ServerLevel level && event.getChunk() instanceof LevelChunk chunk) {
+            createMachines.indexChunk(level, chunk);
+            PendingRestoreData.get(level).onChunkLoad(chunk.getPos());
+        }
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(ChunkEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            createMachines.unloadChunk(level, event.getChunk().getPos());
+        }
+    }
+
+    @SubscribeEvent
+    public void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            createMachines.unloadLevel(level);
+        }
+    }
+
+    @SubscribeEvent
+    public void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            indexCreateMachine(level, event.getPos());
+        }
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onBlockPlaced(BlockEvent.EntityPlaceEvent event) {
+        if (!(event.getLevel() instanceof ServerLevel level)) {
+            return;
+        }
+        if (event instanceof BlockEvent.EntityMultiPlaceEvent multiPlace) {
+            for (BlockSnapshot snapshot : multiPlace.getReplacedBlockSnapshots()) {
+                indexCreateMachine(level, snapshot.getPos());
+            }
+        } else {
+            indexCreateMachine(level, event.getPos());
+        }
+    }
+
     @SubscribeEvent(priority = EventPriority.HIGHEST)
     public void onBlockBreak(BlockEvent.BreakEvent event) {
         Player player = event.getPlayer();
         BlockPos pos = event.getPos();
-        if (!isAllowed(player, pos, FactionPermission.BLOCK_BREAK)) {
+        if (!isAllowed(dataFor(event.getLevel()), player, pos, FactionPermission.BLOCK_BREAK)) {
             event.setCanceled(true);
         }
     }
@@ -68,15 +129,16 @@ public class ClaimProtectionHandler {
     public void onBlockPlace(BlockEvent.EntityPlaceEvent event) {
         Entity entity = event.getEntity();
         BlockPos pos = event.getPos();
-        if (!isMutationAllowed(event.getLevel(), entity, null, pos, MutationAction.BLOCK_PLACE)) {
-            if (!canCreateMachineMutateTarget(event.getLevel(), pos)) {
+        FactionData data = dataFor(event.getLevel());
+        if (!isMutationAllowed(event.getLevel(), data, entity, null, pos, MutationAction.BLOCK_PLACE)) {
+            if (!canCreateMachineMutateTarget(event.getLevel(), data, pos)) {
                 event.setCanceled(true);
                 return;
             }
         }
         if (entity instanceof Player player
             && isCreateBlock(event.getPlacedBlock().getBlock())
-            && !isAllowed(player, pos, FactionPermission.CREATE_MACHINE_INTERACT)) {
+            && !isAllowed(data, player, pos, FactionPermission.CREATE_MACHINE_INTERACT)) {
             event.setCanceled(true);
         }
     }
@@ -85,15 +147,16 @@ public class ClaimProtectionHandler {
     public void onBlockMultiPlace(BlockEvent.EntityMultiPlaceEvent event) {
         Entity entity = event.getEntity();
         BlockPos pos = event.getPos();
-        if (!isMutationAllowed(event.getLevel(), entity, null, pos, MutationAction.BLOCK_PLACE)) {
-            if (!canCreateMachineMutateTarget(event.getLevel(), pos)) {
+        FactionData data = dataFor(event.getLevel());
+        if (!isMutationAllowed(event.getLevel(), data, entity, null, pos, MutationAction.BLOCK_PLACE)) {
+            if (!canCreateMachineMutateTarget(event.getLevel(), data, pos)) {
                 event.setCanceled(true);
                 return;
             }
         }
         if (entity instanceof Player player
             && isCreateBlock(event.getPlacedBlock().getBlock())
-            && !isAllowed(player, pos, FactionPermission.CREATE_MACHINE_INTERACT)) {
+            && !isAllowed(data, player, pos, FactionPermission.CREATE_MACHINE_INTERACT)) {
             event.setCanceled(true);
         }
     }
@@ -105,7 +168,7 @@ public class ClaimProtectionHandler {
         if (sourcePos == null || sourcePos.equals(targetPos)) {
             return;
         }
-        if (!isMutationAllowed(event.getLevel(), null, sourcePos, targetPos, MutationAction.FLUID_PLACE)) {
+        if (!isMutationAllowed(event.getLevel(), dataFor(event.getLevel()), null, sourcePos, targetPos, MutationAction.FLUID_PLACE)) {
             event.setCanceled(true);
         }
     }
@@ -114,7 +177,7 @@ public class ClaimProtectionHandler {
     public void onToolModification(BlockEvent.BlockToolModificationEvent event) {
         Player player = event.getPlayer();
         BlockPos pos = event.getPos();
-        if (!isMutationAllowed(event.getLevel(), player, null, pos, MutationAction.BLOCK_PLACE)) {
+        if (!isMutationAllowed(event.getLevel(), dataFor(event.getLevel()), player, null, pos, MutationAction.BLOCK_PLACE)) {
             event.setCanceled(true);
         }
     }
@@ -124,27 +187,29 @@ public class ClaimProtectionHandler {
         if (!(event.getLevel() instanceof ServerLevel serverLevel)) {
             return;
         }
-        event.getAffectedBlocks().removeIf(pos -> FactionData.get(serverLevel).isClaimed(pos));
+        ExplosionFilter.filter(FactionData.get(serverLevel), event.getAffectedBlocks());
     }
 
     @SubscribeEvent(priority = EventPriority.HIGHEST)
     public void onPistonPre(PistonEvent.Pre event) {
-        if (!(event.getLevel() instanceof ServerLevel)) {
+        if (!(event.getLevel() instanceof ServerLevel serverLevel)) {
             return;
         }
         var helper = event.getStructureHelper();
         if (helper == null || !helper.resolve()) {
             return;
         }
+        PistonStructureCheck check = new PistonStructureCheck(serverLevel, FactionData.get(serverLevel), event.getPos());
+        Direction direction = event.getDirection();
         for (BlockPos moved : helper.getToPush()) {
-            BlockPos target = moved.relative(event.getDirection());
-            if (!isMutationAllowed(event.getLevel(), null, event.getPos(), target, MutationAction.BLOCK_PLACE)) {
+            if (!check.isAllowed(moved.getX() + direction.getStepX(), moved.getY() + direction.getStepY(),
+                moved.getZ() + direction.getStepZ())) {
                 event.setCanceled(true);
                 return;
             }
         }
         for (BlockPos broken : helper.getToDestroy()) {
-            if (!isMutationAllowed(event.getLevel(), null, event.getPos(), broken, MutationAction.BLOCK_BREAK)) {
+            if (!check.isAllowed(broken.getX(), broken.getY(), broken.getZ())) {
                 event.setCanceled(true);
                 return;
             }
@@ -153,24 +218,26 @@ public class ClaimProtectionHandler {
 
     @SubscribeEvent(priority = EventPriority.HIGHEST)
     public void onLivingDestroyBlock(LivingDestroyBlockEvent event) {
-        if (!isMutationAllowed(event.getEntity().level(), event.getEntity(), null, event.getPos(), MutationAction.BLOCK_BREAK)) {
+        var level = event.getEntity().level();
+        if (!isMutationAllowed(level, dataFor(level), event.getEntity(), null, event.getPos(), MutationAction.BLOCK_BREAK)) {
             event.setCanceled(true);
         }
     }
 
     @SubscribeEvent(priority = EventPriority.HIGHEST)
     public void onMobGriefing(EntityMobGriefingEvent event) {
-        if (isClaimed(event.getEntity().level(), event.getEntity().blockPosition())) {
+        if (isClaimed(dataFor(event.getEntity().level()), event.getEntity().blockPosition())) {
             event.setCanGrief(false);
         }
     }
 
     @SubscribeEvent(priority = EventPriority.HIGHEST)
     public void onFarmlandTrample(BlockEvent.FarmlandTrampleEvent event) {
-        if (!isClaimed(event.getLevel(), event.getPos())) {
+        FactionData data = dataFor(event.getLevel());
+        if (!isClaimed(data, event.getPos())) {
             return;
         }
-        if (event.getEntity() instanceof Player player && isAllowed(player, event.getPos(), FactionPermission.BLOCK_BREAK)) {
+        if (event.getEntity() instanceof Player player && isAllowed(data, player, event.getPos(), FactionPermission.BLOCK_BREAK)) {
             return;
         }
         event.setCanceled(true);
@@ -181,12 +248,12 @@ public class ClaimProtectionHandler {
         ServerLevel level = event.getLevel();
         BlockPos pos = event.getPos();
         FactionData data = FactionData.get(level);
-        if (!data.isClaimed(pos)) {
+        if (data.isWilderness(pos)) {
             return;
         }
         Entity breaker = event.getBreaker();
         if (breaker instanceof Player player) {
-            if (isAllowed(player, pos, FactionPermission.BLOCK_BREAK)) {
+            if (isAllowed(data, player, pos, FactionPermission.BLOCK_BREAK)) {
                 return;
             }
             event.setCanceled(true);
@@ -194,7 +261,7 @@ public class ClaimProtectionHandler {
             return;
         }
         if (breaker != null) {
-            if (isMutationAllowed(level, breaker, null, pos, MutationAction.BLOCK_BREAK)) {
+            if (isMutationAllowed(level, data, breaker, null, pos, MutationAction.BLOCK_BREAK)) {
                 return;
             }
             event.setCanceled(true);
@@ -204,7 +271,7 @@ public class ClaimProtectionHandler {
         if (!isLikelyCreateMachineBreak(level, pos)) {
             return;
         }
-        if (canCreateMachineMutateTarget(level, pos)) {
+        if (canCreateMachineMutateTarget(level, data, pos)) {
             return;
         }
         event.setCanceled(true);
@@ -213,38 +280,27 @@ public class ClaimProtectionHandler {
 
     @SubscribeEvent
     public void onServerTick(ServerTickEvent.Post event) {
-        int maxPerTick = Math.max(1, FactionConfig.SERVER.mutationRestoreMaxPerTick.get());
+        long deadline = System.nanoTime() + FactionConfig.SERVER.mutationRestoreBudgetMicros.get() * 1_000L;
         for (ServerLevel level : event.getServer().getAllLevels()) {
-            Map<BlockPos, BlockState> restores = pendingRestores.get(level);
-            if (restores == null || restores.isEmpty()) {
-                pendingRestores.remove(level);
-                continue;
-            }
-            int applied = 0;
-            java.util.Iterator<Map.Entry<BlockPos, BlockState>> iterator = restores.entrySet().iterator();
-            while (iterator.hasNext() && applied < maxPerTick) {
-                Map.Entry<BlockPos, BlockState> entry = iterator.next();
-                level.setBlockAndUpdate(entry.getKey(), entry.getValue());
-                iterator.remove();
-                applied++;
-            }
-            if (restores.isEmpty()) {
-                pendingRestores.remove(level);
+            PendingRestoreData restores = PendingRestoreData.get(level);
+            if (!restores.isEmpty()) {
+                restores.apply(level, deadline);
             }
         }
     }
 
     @SubscribeEvent
     public void onFireSpread(BlockEvent.EntityPlaceEvent event) {
-        if (!(event.getPlacedBlock().getBlock() instanceof BaseFireBlock)) {
+        if (!ProtectionTraits.has(event.getPlacedBlock().getBlock(), ProtectionTraits.FIRE)) {
             return;
         }
+        FactionData data = dataFor(event.getLevel());
         if (event.getEntity() instanceof Player player
-            && isAllowed(player, event.getPos(), FactionPermission.BLOCK_USE)) {
+            && isAllowed(data, player, event.getPos(), FactionPermission.BLOCK_USE)) {
             return;
         }
         BlockPos pos = event.getPos();
-        if (isClaimed(event.getLevel(), pos)) {
+        if (isClaimed(data, pos)) {
             event.setCanceled(true);
         }
     }
@@ -255,13 +311,14 @@ public class ClaimProtectionHandler {
         Player player = event.getEntity();
         BlockPos pos = event.getPos();
         BlockState state = event.getLevel().getBlockState(pos);
+        FactionData data = dataFor(event.getLevel());
         if (event.getItemStack().getItem() instanceof net.minecraft.world.item.BucketItem bucketItem
             && bucketItem != net.minecraft.world.item.Items.BUCKET) {
             BlockPos targetPos = event.getFace() == null ? pos : pos.relative(event.getFace());
-            boolean allowedAtClicked = isAllowed(player, pos, FactionPermission.FLUID_PLACE);
-            boolean allowedAtTarget = isAllowed(player, targetPos, FactionPermission.FLUID_PLACE);
+            boolean allowedAtClicked = isAllowed(data, player, pos, FactionPermission.FLUID_PLACE);
+            boolean allowedAtTarget = isAllowed(data, player, targetPos, FactionPermission.FLUID_PLACE);
             boolean allowedBucket = allowedAtClicked && allowedAtTarget;
-            logAccess(player, targetPos, FactionPermission.FLUID_PLACE, allowedBucket, event.getItemStack().getItem().toString());
+            logAccess(data, player, targetPos, FactionPermission.FLUID_PLACE, allowedBucket, event.getItemStack().getItem().toString());
             if (!allowedBucket) {
                 event.setCanceled(true);
                 event.setCancellationResult(net.minecraft.world.InteractionResult.FAIL);
@@ -269,8 +326,8 @@ public class ClaimProtectionHandler {
             return;
         }
         if (isDoorLike(state) && !FactionConfig.SERVER.allowDoorUseInClaims.get()) {
-            boolean allowedDoor = isMemberOrTrusted(player, pos) || isAllowed(player, pos, FactionPermission.BLOCK_USE);
-            logAccess(player, pos, FactionPermission.BLOCK_USE, allowedDoor, state.getBlock().getDescriptionId());
+            boolean allowedDoor = isMemberOrTrusted(data, player, pos) || isAllowed(data, player, pos, FactionPermission.BLOCK_USE);
+            logAccess(data, player, pos, FactionPermission.BLOCK_USE, allowedDoor, state.getBlock().getDescriptionId());
             if (!allowedDoor) {
                 event.setCanceled(true);
                 event.setCancellationResult(net.minecraft.world.InteractionResult.FAIL);
@@ -278,8 +335,8 @@ public class ClaimProtectionHandler {
             return;
         }
         FactionPermission permission = permissionForBlockUse(state, event.getLevel(), pos);
-        boolean allowed = isAllowed(player, pos, permission);
-        logAccess(player, pos, permission, allowed, event.getLevel().getBlockState(pos).getBlock().getDescriptionId());
+        boolean allowed = isAllowed(data, player, pos, permission);
+        logAccess(data, player, pos, permission, allowed, state.getBlock().getDescriptionId());
         if (!allowed) {
             event.setCanceled(true);
             event.setCancellationResult(net.minecraft.world.InteractionResult.FAIL);
@@ -293,8 +350,9 @@ public class ClaimProtectionHandler {
         }
         Player player = event.getEntity();
         BlockPos pos = event.getPos();
-        boolean allowed = isAllowed(player, pos, FactionPermission.ENTITY_INTERACT);
-        logAccess(player, pos, FactionPermission.ENTITY_INTERACT, allowed, event.getTarget().getType().toString());
+        FactionData data = dataFor(event.getLevel());
+        boolean allowed = isAllowed(data, player, pos, FactionPermission.ENTITY_INTERACT);
+        logAccess(data, player, pos, FactionPermission.ENTITY_INTERACT, allowed, event.getTarget().getType().toString());
         if (!allowed) {
             event.setCanceled(true);
         }
@@ -307,8 +365,9 @@ public class ClaimProtectionHandler {
         }
         Player player = event.getEntity();
         BlockPos pos = event.getPos();
-        boolean allowed = isAllowed(player, pos, FactionPermission.ENTITY_INTERACT);
-        logAccess(player, pos, FactionPermission.ENTITY_INTERACT, allowed, event.getTarget().getType().toString());
+        FactionData data = dataFor(event.getLevel());
+        boolean allowed = isAllowed(data, player, pos, FactionPermission.ENTITY_INTERACT);
+        logAccess(data, player, pos, FactionPermission.ENTITY_INTERACT, allowed, event.getTarget().getType().toString());
         if (!allowed) {
             event.setCanceled(true);
         }
@@ -325,8 +384,9 @@ public class ClaimProtectionHandler {
             return;
         }
         BlockPos pos = target.blockPosition();
-        boolean allowed = isAllowed(player, pos, FactionPermission.ENTITY_INTERACT);
-        logAccess(player, pos, FactionPermission.ENTITY_INTERACT, allowed, target.getType().toString());
+        FactionData data = dataFor(player.level());
+        boolean allowed = isAllowed(data, player, pos, FactionPermission.ENTITY_INTERACT);
+        logAccess(data, player, pos, FactionPermission.ENTITY_INTERACT, allowed, target.getType().toString());
         if (!allowed) {
             event.setCanceled(true);
         }
@@ -354,7 +414,7 @@ public class ClaimProtectionHandler {
             return;
         }
         FactionData data = FactionData.get(serverLevel);
-        if (!data.isClaimed(victim.blockPosition())) {
+        if (data.isWilderness(victim.blockPosition())) {
             return;
         }
         Optional<UUID> victimFactionId = data.getFactionIdByPlayer(victim.getUUID());
@@ -396,19 +456,25 @@ public class ClaimProtectionHandler {
     }
 
     private boolean isCorpseEntity(Entity entity) {
-        var typeKey = BuiltInRegistries.ENTITY_TYPE.getKey(entity.getType());
-        return typeKey != null && "corpse".equals(typeKey.getNamespace()) && "corpse".equals(typeKey.getPath());
+        return ProtectionTraits.has(entity.getType(), ProtectionTraits.CORPSE);
+    }
+
+    private static FactionData dataFor(LevelAccessor level) {
+        return level instanceof ServerLevel serverLevel ? FactionData.get(serverLevel) : null;
     }
 
-    private boolean isAllowed(Player player, BlockPos pos, FactionPermission permission) {
+    private boolean isAllowed(FactionData data, Player player, BlockPos pos, FactionPermission permission) {
+        if (data == null) {
+            return true;
+        }
         if (!(player instanceof ServerPlayer serverPlayer)) {
-            return !isClaimed(player.level(), pos);
+            return data.isWilderness(pos);
         }
         boolean isFakePlayer = serverPlayer instanceof FakePlayer;
         if (isWarZone(serverPlayer.serverLevel())) {
             return true;
         }
-        if (isFakePlayer && isClaimed(serverPlayer.serverLevel(), pos)
+        if (isFakePlayer && !data.isWilderness(pos)
             && !FactionConfig.SERVER.allowFakePlayerActionsInClaims.get()) {
             return false;
         }
@@ -416,16 +482,34 @@ public class ClaimProtectionHandler {
         if (isSafeZone(serverPlayer.serverLevel())) {
             return hasBypassPermission && FactionBypassManager.isBypassEnabled(serverPlayer);
         }
-        if (hasBypassPermission && FactionBypassManager.isBypassEnabled(serverPlayer)) {
-            logAccess(serverPlayer, pos, permission, true, "ADMIN_BYPASS");
+        if (data.isWilderness(pos)) {
             return true;
         }
-        return FactionData.get(serverPlayer.serverLevel()).hasPermission(serverPlayer, pos, permission);
+        int decision = PermissionDecisionCache.get(serverPlayer, pos, permission, hasBypassPermission);
+        if (decision == PermissionDecisionCache.UNKNOWN) {
+            if (hasBypassPermission && FactionBypassManager.isBypassEnabled(serverPlayer)) {
+                decision = PermissionDecisionCache.BYPASS;
+            } else {
+                decision = data.hasPermission(serverPlayer, pos, permission)
+                    ? PermissionDecisionCache.ALLOW
+                    : PermissionDecisionCache.DENY;
+            }
+            PermissionDecisionCache.put(serverPlayer, pos, permission, hasBypassPermission, decision);
+        }
+        if (decision == PermissionDecisionCache.BYPASS) {
+            logAccess(data, serverPlayer, pos, permission, true, "ADMIN_BYPASS");
+            return true;
+        }
+        return decision == PermissionDecisionCache.ALLOW;
     }
 
 
-    private boolean isMutationAllowed(LevelAccessor level, Entity actor, BlockPos sourcePos, BlockPos targetPos, MutationAction action) {
-        if (!(level instanceof ServerLevel serverLevel)) {
+    private boolean isMutationAllowed(LevelAccessor level, FactionData data, Entity actor, BlockPos sourcePos, BlockPos targetPos,
+                                      MutationAction action) {
+        if (!(level instanceof ServerLevel serverLevel) || data == null) {
+            return true;
+        }
+        if (data.isWilderness(targetPos) && !isSafeZone(serverLevel)) {
             return true;
         }
         FactionPermission permission = switch (action) {
@@ -434,22 +518,21 @@ public class ClaimProtectionHandler {
             case FLUID_PLACE -> FactionPermission.FLUID_PLACE;
         };
         if (actor instanceof Player player) {
-            return isAllowed(player, targetPos, permission);
+            return isAllowed(data, player, targetPos, permission);
         }
-        if (!FactionData.get(serverLevel).isClaimed(targetPos)) {
+        if (data.isWilderness(targetPos)) {
             return true;
         }
         if (!FactionConfig.SERVER.strictNonPlayerMutationChecks.get()) {
-            return canCreateMachineMutateTarget(serverLevel, targetPos);
+            return canCreateMachineMutateTarget(serverLevel, data, targetPos);
         }
         if (sourcePos == null) {
             return false;
         }
-        return hasSameClaimOwner(serverLevel, sourcePos, targetPos);
+        return hasSameClaimOwner(data, sourcePos, targetPos);
     }
 
-    private boolean hasSameClaimOwner(ServerLevel level, BlockPos sourcePos, BlockPos targetPos) {
-        FactionData data = FactionData.get(level);
+    private boolean hasSameClaimOwner(FactionData data, BlockPos sourcePos, BlockPos targetPos) {
         Optional<UUID> sourceOwner = data.getClaimOwner(sourcePos);
         Optional<UUID> targetOwner = data.getClaimOwner(targetPos);
         return sourceOwner.isPresent() && targetOwner.isPresent() && sourceOwner.get().equals(targetOwner.get());
@@ -459,26 +542,16 @@ public class ClaimProtectionHandler {
         if (!FactionConfig.SERVER.enableMutationRestoreFallback.get()) {
             return;
         }
-        pendingRestores.computeIfAbsent(level, key -> new HashMap<>()).put(pos.immutable(), state);
+        PendingRestoreData.get(level).queue(pos, state);
     }
 
-    private boolean isClaimed(LevelAccessor level, BlockPos pos) {
-        if (!(level instanceof ServerLevel serverLevel)) {
-            return false;
-        }
-        return FactionData.get(serverLevel).isClaimed(pos);
-    }
-
-    private Optional<UUID> getClaimOwner(LevelAccessor level, BlockPos pos) {
-        if (!(level instanceof ServerLevel serverLevel)) {
-            return Optional.empty();
-        }
-        return FactionData.get(serverLevel).getClaimOwner(pos);
+    private boolean isClaimed(FactionData data, BlockPos pos) {
+        return data != null && !data.isWilderness(pos);
     }
 
     private FactionPermission permissionForBlockUse(BlockState state, net.minecraft.world.level.Level level, BlockPos pos) {
         Block block = state.getBlock();
-        if (block == Blocks.LEVER || state.is(BlockTags.BUTTONS)) {
+        if (ProtectionTraits.has(block, ProtectionTraits.REDSTONE_TOGGLE)) {
             if (!FactionConfig.SERVER.allowRedstoneInClaims.get()) {
                 return FactionPermission.BLOCK_USE;
             }
@@ -488,23 +561,21 @@ public class ClaimProtectionHandler {
         if (isCreateMachine(block, blockEntity)) {
             return FactionPermission.CREATE_MACHINE_INTERACT;
         }
-        if (blockEntity instanceof MenuProvider || block instanceof MenuProvider) {
+        if (ProtectionTraits.has(block, ProtectionTraits.CONTAINER) || blockEntity instanceof MenuProvider) {
             return FactionPermission.CONTAINER_OPEN;
         }
         return FactionPermission.BLOCK_USE;
     }
 
-    private void logAccess(Player player, BlockPos pos, FactionPermission permission, boolean allowed, String targetName) {
-        if (!(player instanceof ServerPlayer serverPlayer)) {
-            return;
-        }
-        if (!(serverPlayer.level() instanceof ServerLevel serverLevel)) {
+    private void logAccess(FactionData data, Player player, BlockPos pos, FactionPermission permission, boolean allowed,
+                           String targetName) {
+        if (data == null || !(player instanceof ServerPlayer serverPlayer)) {
             return;
         }
-        if (!FactionData.get(serverLevel).isClaimed(pos)) {
+        if (data.isWilderness(pos)) {
             return;
         }
-        FactionData.get(serverLevel).logAccess(
+        data.logAccess(
             pos,
             serverPlayer.getUUID(),
             serverPlayer.getName().getString(),
@@ -514,12 +585,10 @@ public class ClaimProtectionHandler {
         );
     }
 
-    private boolean isMemberOrTrusted(Player player, BlockPos pos) {
-        if (!(player instanceof ServerPlayer serverPlayer)) {
+    private boolean isMemberOrTrusted(FactionData data, Player player, BlockPos pos) {
+        if (data == null || !(player instanceof ServerPlayer serverPlayer)) {
             return false;
         }
-        ServerLevel level = serverPlayer.serverLevel();
-        FactionData data = FactionData.get(level);
         Optional<UUID> ownerId = data.getClaimOwner(pos);
         if (ownerId.isEmpty()) {
             return true;
@@ -532,8 +601,7 @@ public class ClaimProtectionHandler {
     }
 
     private boolean isDoorLike(BlockState state) {
-        Block block = state.getBlock();
-        return block instanceof DoorBlock || block instanceof TrapDoorBlock || block instanceof FenceGateBlock;
+        return ProtectionTraits.has(state.getBlock(), ProtectionTraits.DOOR_LIKE);
     }
 
     private boolean isSafeZone(ServerLevel level) {
@@ -550,8 +618,8 @@ public class ClaimProtectionHandler {
         return isCreateBlock(block) || isCreateBlockEntity(blockEntity);
     }
 
-    private boolean canCreateMachineMutateTarget(LevelAccessor level, BlockPos targetPos) {
-        if (!(level instanceof ServerLevel serverLevel)) {
+    private boolean canCreateMachineMutateTarget(LevelAccessor level, FactionData data, BlockPos targetPos) {
+        if (!(level instanceof ServerLevel serverLevel) || data == null) {
             return true;
         }
         if (!FactionConfig.SERVER.enableCreateMachineClaimHeuristics.get()) {
@@ -560,12 +628,11 @@ public class ClaimProtectionHandler {
         if (!FactionConfig.SERVER.allowOwnCreateMachineMutations.get()) {
             return false;
         }
-        FactionData data = FactionData.get(serverLevel);
         Optional<UUID> targetOwner = data.getClaimOwner(targetPos);
         if (targetOwner.isEmpty()) {
             return true;
         }
-        return hasNearbyCreateMachineOwnedBy(serverLevel, targetPos, targetOwner.get(), getCreateMachineDetectionRadius());
+        return hasNearbyCreateMachineOwnedBy(serverLevel, data, targetPos, targetOwner.get(), getCreateMachineDetectionRadius());
     }
 
     private boolean isLikelyCreateMachineBreak(ServerLevel level, BlockPos targetPos) {
@@ -575,36 +642,13 @@ public class ClaimProtectionHandler {
         return hasNearbyCreateMachine(level, targetPos, getCreateMachineDetectionRadius());
     }
 
-    private boolean hasNearbyCreateMachineOwnedBy(ServerLevel level, BlockPos targetPos, UUID owner, int radius) {
-        FactionData data = FactionData.get(level);
-        for (int x = -radius; x <= radius; x++) {
-            for (int y = -radius; y <= radius; y++) {
-                for (int z = -radius; z <= radius; z++) {
-                    BlockPos scanPos = targetPos.offset(x, y, z);
-                    if (!hasCreateMachineAt(level, scanPos)) {
-                        continue;
-                    }
-                    Optional<UUID> sourceOwner = data.getClaimOwner(scanPos);
-                    if (sourceOwner.isPresent() && sourceOwner.get().equals(owner)) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    private boolean hasNearbyCreateMachineOwnedBy(ServerLevel level, FactionData data, BlockPos targetPos, UUID owner, int radius) {
+        return createMachines.anyWithin(level, targetPos, radius, pos -> hasCreateMachineAt(level, pos),
+            pos -> owner.equals(data.getClaimOwner(pos).orElse(null)));
     }
 
     private boolean hasNearbyCreateMachine(ServerLevel level, BlockPos targetPos, int radius) {
-        for (int x = -radius; x <= radius; x++) {
-            for (int y = -radius; y <= radius; y++) {
-                for (int z = -radius; z <= radius; z++) {
-                    if (hasCreateMachineAt(level, targetPos.offset(x, y, z))) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return createMachines.anyWithin(level, targetPos, radius, pos -> hasCreateMachineAt(level, pos), pos -> true);
     }
 
     private boolean hasCreateMachineAt(ServerLevel level, BlockPos pos) {
@@ -613,19 +657,87 @@ public class ClaimProtectionHandler {
         return isCreateMachine(state.getBlock(), blockEntity);
     }
 
+    private void indexCreateMachine(ServerLevel level, BlockPos pos) {
+        if (hasCreateMachineAt(level, pos)) {
+            createMachines.add(level, pos);
+        }
+    }
+
     private int getCreateMachineDetectionRadius() {
         return Math.max(1, FactionConfig.SERVER.createMachineDetectionRadius.get());
     }
 
 
     private boolean isCreateBlock(Block block) {
-        return CREATE_MOD_ID.equals(BuiltInRegistries.BLOCK.getKey(block).getNamespace());
+        return ProtectionTraits.has(block, ProtectionTraits.CREATE_MACHINE);
     }
 
     private boolean isCreateBlockEntity(BlockEntity blockEntity) {
-        if (blockEntity == null) {
-            return false;
+        return blockEntity != null && ProtectionTraits.has(blockEntity.getType(), ProtectionTraits.CREATE_MACHINE);
+    }
+
+    private final class PistonStructureCheck {
+        private final ServerLevel level;
+        private final FactionData data;
+        private final boolean strict;
+        private final long sourceChunkKey;
+        private final UUID sourceOwner;
+        private final Long2ObjectOpenHashMap<ChunkVerdict> verdicts = new Long2ObjectOpenHashMap<>();
+        private final Long2ObjectOpenHashMap<UUID> machineOwners = new Long2ObjectOpenHashMap<>();
+        private long lastChunkKey;
+        private ChunkVerdict lastVerdict;
+
+        private PistonStructureCheck(ServerLevel level, FactionData data, BlockPos sourcePos) {
+            this.level = level;
+            this.data = data;
+            this.strict = FactionConfig.SERVER.strictNonPlayerMutationChecks.get();
+            this.sourceChunkKey = ChunkPos.asLong(sourcePos);
+            this.sourceOwner = data.getClaimOwner(sourcePos).orElse(null);
+        }
+
+        private boolean isAllowed(int x, int y, int z) {
+            long chunkKey = ChunkPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z));
+            ChunkVerdict verdict;
+            if (lastVerdict != null && chunkKey == lastChunkKey) {
+                verdict = lastVerdict;
+            } else {
+                verdict = verdicts.get(chunkKey);
+                if (verdict == null) {
+                    verdict = resolve(chunkKey);
+                    verdicts.put(chunkKey, verdict);
+                }
+                lastChunkKey = chunkKey;
+                lastVerdict = verdict;
+            }
+            if (verdict != ChunkVerdict.CHECK_MACHINES) {
+                return verdict == ChunkVerdict.ALLOW;
+            }
+            return hasNearbyCreateMachineOwnedBy(level, data, new BlockPos(x, y, z), machineOwners.get(chunkKey),
+                getCreateMachineDetectionRadius());
+        }
+
+        private ChunkVerdict resolve(long chunkKey) {
+            ChunkPos chunkPos = new ChunkPos(chunkKey);
+            if (!data.isClaimed(chunkPos)) {
+                return ChunkVerdict.ALLOW;
+            }
+            if (strict) {
+                if (chunkKey == sourceChunkKey) {
+                    return sourceOwner != null ? ChunkVerdict.ALLOW : ChunkVerdict.DENY;
+                }
+                Optional<UUID> owner = data.getClaimOwner(chunkPos);
+                return owner.isPresent() && owner.get().equals(sourceOwner) ? ChunkVerdict.ALLOW : ChunkVerdict.DENY;
+            }
+            if (!FactionConfig.SERVER.enableCreateMachineClaimHeuristics.get()
+                || !FactionConfig.SERVER.allowOwnCreateMachineMutations.get()) {
+                return ChunkVerdict.DENY;
+            }
+            Optional<UUID> owner = data.getClaimOwner(chunkPos);
+            if (owner.isEmpty()) {
+                return ChunkVerdict.ALLOW;
+            }
+            machineOwners.put(chunkKey, owner.get());
+            return ChunkVerdict.CHECK_MACHINES;
         }
-        return CREATE_MOD_ID.equals(BuiltInRegistries.BLOCK_ENTITY_TYPE.getKey(blockEntity.getType()).getNamespace());
     }
 }
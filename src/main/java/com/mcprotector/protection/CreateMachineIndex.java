@@ -0,0 +1,166 @@
+package com.mcprotector.protection;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+final class CreateMachineIndex {
+    private static final long RESCAN_INTERVAL_TICKS = 100L;
+
+    private final Map<ServerLevel, Long2ObjectOpenHashMap<LongOpenHashSet>> levels = new IdentityHashMap<>();
+    private final Map<ServerLevel, Long2LongOpenHashMap> rescans = new IdentityHashMap<>();
+    private final Predicate<BlockState> isMachineBlock;
+    private final Predicate<BlockEntity> isMachineBlockEntity;
+
+    CreateMachineIndex(Predicate<BlockState> isMachineBlock, Predicate<BlockEntity> isMachineBlockEntity) {
+        this.isMachineBlock = isMachineBlock;
+        this.isMachineBlockEntity = isMachineBlockEntity;
+    }
+
+    void indexChunk(ServerLevel level, LevelChunk chunk) {
+        long chunkKey = chunk.getPos().toLong();
+        Long2ObjectOpenHashMap<LongOpenHashSet> chunks = chunksFor(level);
+        chunks.remove(chunkKey);
+        Long2LongOpenHashMap scanned = rescans.get(level);
+        if (scanned != null) {
+            scanned.remove(chunkKey);
+        }
+        scan(chunks, chunk, 0, chunk.getSections().length - 1);
+    }
+
+    void add(ServerLevel level, BlockPos pos) {
+        positions(chunksFor(level), ChunkPos.asLong(pos)).add(pos.asLong());
+    }
+
+    void unloadChunk(ServerLevel level, ChunkPos chunkPos) {
+        Long2ObjectOpenHashMap<LongOpenHashSet> chunks = levels.get(level);
+        if (chunks != null) {
+            chunks.remove(chunkPos.toLong());
+        }
+        Long2LongOpenHashMap scanned = rescans.get(level);
+        if (scanned != null) {
+            scanned.remove(chunkPos.toLong());
+        }
+    }
+
+    void unloadLevel(ServerLevel level) {
+        levels.remove(level);
+        rescans.remove(level);
+    }
+
+    boolean anyWithin(ServerLevel level, BlockPos center, int radius, Predicate<BlockPos> isMachine,
+                      Predicate<BlockPos> accept) {
+        Long2ObjectOpenHashMap<LongOpenHashSet> chunks = chunksFor(level);
+        int minChunkX = SectionPos.blockToSectionCoord(center.getX() - radius);
+        int maxChunkX = SectionPos.blockToSectionCoord(center.getX() + radius);
+        int minChunkZ = SectionPos.blockToSectionCoord(center.getZ() - radius);
+        int maxChunkZ = SectionPos.blockToSectionCoord(center.getZ() + radius);
+        BlockPos.MutableBlockPos candidate = new BlockPos.MutableBlockPos();
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                LongOpenHashSet positions = chunks.get(ChunkPos.asLong(chunkX, chunkZ));
+                if (positions == null) {
+                    positions = rescan(level, chunks, chunkX, chunkZ, center.getY() - radius, center.getY() + radius);
+                    if (positions == null) {
+                        continue;
+                    }
+                }
+                LongIterator iterator = positions.iterator();
+                while (iterator.hasNext()) {
+                    long packed = iterator.nextLong();
+                    candidate.set(packed);
+                    if (Math.abs(candidate.getX() - center.getX()) > radius
+                        || Math.abs(candidate.getY() - center.getY()) > radius
+                        || Math.abs(candidate.getZ() - center.getZ()) > radius) {
+                        continue;
+                    }
+                    if (!isMachine.test(candidate)) {
+                        iterator.remove();
+                        continue;
+                    }
+                    if (accept.test(candidate)) {
+                        return true;
+                    }
+                }
+                if (positions.isEmpty()) {
+                    chunks.remove(ChunkPos.asLong(chunkX, chunkZ));
+                }
+            }
+        }
+        return false;
+    }
+
+    private LongOpenHashSet rescan(ServerLevel level, Long2ObjectOpenHashMap<LongOpenHashSet> chunks, int chunkX,
+                                   int chunkZ, int minY, int maxY) {
+        long chunkKey = ChunkPos.asLong(chunkX, chunkZ);
+        long now = level.getGameTime();
+        Long2LongOpenHashMap scanned = rescans.computeIfAbsent(level, key -> new Long2LongOpenHashMap());
+        if (scanned.containsKey(chunkKey) && now - scanned.get(chunkKey) < RESCAN_INTERVAL_TICKS) {
+            return null;
+        }
+        LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+        if (chunk == null) {
+            return null;
+        }
+        scanned.put(chunkKey, now);
+        int lastSection = chunk.getSections().length - 1;
+        int minSection = Math.max(0, Math.min(lastSection, chunk.getSectionIndex(minY)));
+        int maxSection = Math.max(0, Math.min(lastSection, chunk.getSectionIndex(maxY)));
+        scan(chunks, chunk, minSection, maxSection);
+        return chunks.get(chunkKey);
+    }
+
+    private void scan(Long2ObjectOpenHashMap<LongOpenHashSet> chunks, LevelChunk chunk, int minSection, int maxSection) {
+        long chunkKey = chunk.getPos().toLong();
+        for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+            if (isMachineBlockEntity.test(blockEntity)) {
+                positions(chunks, chunkKey).add(blockEntity.getBlockPos().asLong());
+            }
+        }
+        int baseX = chunk.getPos().getMinBlockX();
+        int baseZ = chunk.getPos().getMinBlockZ();
+        LevelChunkSection[] sections = chunk.getSections();
+        for (int index = minSection; index <= maxSection; index++) {
+            LevelChunkSection section = sections[index];
+            if (section.hasOnlyAir() || !section.maybeHas(isMachineBlock)) {
+                continue;
+            }
+            int baseY = SectionPos.sectionToBlockCoord(chunk.getSectionYFromSectionIndex(index));
+            for (int y = 0; y < SectionPos.SECTION_SIZE; y++) {
+                for (int z = 0; z < SectionPos.SECTION_SIZE; z++) {
+                    for (int x = 0; x < SectionPos.SECTION_SIZE; x++) {
+                        if (isMachineBlock.test(section.getBlockState(x, y, z))) {
+                            positions(chunks, chunkKey).add(BlockPos.asLong(baseX + x, baseY + y, baseZ + z));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Long2ObjectOpenHashMap<LongOpenHashSet> chunksFor(ServerLevel level) {
+        return levels.computeIfAbsent(level, key -> new Long2ObjectOpenHashMap<>());
+    }
+
+    private static LongOpenHashSet positions(Long2ObjectOpenHashMap<LongOpenHashSet> chunks, long chunkKey) {
+        LongOpenHashSet positions = chunks.get(chunkKey);
+        if (positions == null) {
+            positions = new LongOpenHashSet();
+            chunks.put(chunkKey, positions);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,79 @@
+package com.mcprotector.protection;
+
+import com.mcprotector.config.FactionConfig;
+import com.mcprotector.data.FactionData;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+final class ExplosionFilter {
+    private final FactionData data;
+    private final boolean allowInWarClaims;
+    private final Long2BooleanOpenHashMap protectedChunks = new Long2BooleanOpenHashMap();
+    private long lastChunkKey;
+    private boolean lastProtected;
+    private boolean hasLast;
+
+    private ExplosionFilter(FactionData data) {
+        this.data = data;
+        this.allowInWarClaims = FactionConfig.SERVER.allowExplosionsInWarClaims.get();
+    }
+
+    static void filter(FactionData data, List<BlockPos> affectedBlocks) {
+        if (affectedBlocks.isEmpty()) {
+            return;
+        }
+        ExplosionFilter filter = new ExplosionFilter(data);
+        int kept = 0;
+        int size = affectedBlocks.size();
+        for (int i = 0; i < size; i++) {
+            BlockPos pos = affectedBlocks.get(i);
+            if (filter.isProtected(pos)) {
+                continue;
+            }
+            if (kept != i) {
+                affectedBlocks.set(kept, pos);
+            }
+            kept++;
+        }
+        if (kept < size) {
+            affectedBlocks.subList(kept, size).clear();
+        }
+    }
+
+    private boolean isProtected(BlockPos pos) {
+        int chunkX = SectionPos.blockToSectionCoord(pos.getX());
+        int chunkZ = SectionPos.blockToSectionCoord(pos.getZ());
+        long chunkKey = ChunkPos.asLong(chunkX, chunkZ);
+        if (hasLast && chunkKey == lastChunkKey) {
+            return lastProtected;
+        }
+        boolean result;
+        if (protectedChunks.containsKey(chunkKey)) {
+            result = protectedChunks.get(chunkKey);
+        } else {
+            result = resolve(new ChunkPos(chunkX, chunkZ));
+            protectedChunks.put(chunkKey, result);
+        }
+        hasLast = true;
+        lastChunkKey = chunkKey;
+        lastProtected = result;
+        return result;
+    }
+
+    private boolean resolve(ChunkPos chunkPos) {
+        if (!data.isClaimed(chunkPos)) {
+            return false;
+        }
+        if (!allowInWarClaims || data.isSafeZoneClaimed(chunkPos)) {
+            return true;
+        }
+        Optional<UUID> ownerId = data.getClaimOwner(chunkPos);
+        return ownerId.isEmpty() || !data.isFactionAtWar(ownerId.get());
+    }
+}
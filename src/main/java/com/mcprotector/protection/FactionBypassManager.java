@@ -1,5 +1,6 @@
 package com.mcprotector.protection;
 
+import com.mcprotector.data.FactionData;
 import net.minecraft.server.level.ServerPlayer;
 
 import java.util.Set;
@@ -18,6 +19,7 @@ public final class FactionBypassManager {
 
     public static boolean toggle(ServerPlayer player) {
         UUID playerId = player.getUUID();
+        FactionData.bumpProtectionEpoch();
         if (DISABLED_BYPASS.remove(playerId)) {
             return true;
         }
@@ -26,6 +28,7 @@ public final class FactionBypassManager {
     }
 
     public static void setEnabled(ServerPlayer player, boolean enabled) {
+        FactionData.bumpProtectionEpoch();
         if (enabled) {
             DISABLED_BYPASS.remove(player.getUUID());
         } else {
@@ -0,0 +1,103 @@
+package com.mcprotector.protection;
+
+import com.mcprotector.data.FactionData;
+import com.mcprotector.data.FactionPermission;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public final class PermissionDecisionCache {
+    static final int UNKNOWN = 0;
+    static final int DENY = 1;
+    static final int ALLOW = 2;
+    static final int BYPASS = 3;
+    private static final int MAX_CHUNKS_PER_PLAYER = 64;
+    private static final Map<UUID, PlayerDecisions> PLAYERS = new HashMap<>();
+    private static long hits;
+    private static long misses;
+
+    private PermissionDecisionCache() {
+    }
+
+    static int get(ServerPlayer player, BlockPos pos, FactionPermission permission, boolean bypassPermitted) {
+        PlayerDecisions decisions = PLAYERS.get(player.getUUID());
+        int decision = UNKNOWN;
+        if (decisions != null && decisions.isCurrent(player.serverLevel())) {
+            long packed = decisions.byChunk.get(chunkKey(pos));
+            decision = (int) (packed >>> shift(permission, bypassPermitted)) & 3;
+        }
+        if (decision == UNKNOWN) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return decision;
+    }
+
+    static void put(ServerPlayer player, BlockPos pos, FactionPermission permission, boolean bypassPermitted, int decision) {
+        PlayerDecisions decisions = PLAYERS.computeIfAbsent(player.getUUID(), id -> new PlayerDecisions());
+        ServerLevel level = player.serverLevel();
+        if (!decisions.isCurrent(level)) {
+            decisions.reset(level);
+        }
+        long key = chunkKey(pos);
+        if (!decisions.byChunk.containsKey(key) && decisions.byChunk.size() >= MAX_CHUNKS_PER_PLAYER) {
+            decisions.byChunk.clear();
+        }
+        int shift = shift(permission, bypassPermitted);
+        long packed = decisions.byChunk.get(key) & ~(3L << shift);
+        decisions.byChunk.put(key, packed | ((long) decision << shift));
+    }
+
+    public static void forget(UUID playerId) {
+        PLAYERS.remove(playerId);
+    }
+
+    public static void clear() {
+        PLAYERS.clear();
+    }
+
+    public static long getHits() {
+        return hits;
+    }
+
+    public static long getMisses() {
+        return misses;
+    }
+
+    public static void resetCounters() {
+        hits = 0L;
+        misses = 0L;
+    }
+
+    private static long chunkKey(BlockPos pos) {
+        return ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+    }
+
+    private static int shift(FactionPermission permission, boolean bypassPermitted) {
+        return ((permission.ordinal() << 1) | (bypassPermitted ? 1 : 0)) << 1;
+    }
+
+    private static final class PlayerDecisions {
+        private final Long2LongOpenHashMap byChunk = new Long2LongOpenHashMap();
+        private ServerLevel level;
+        private long epoch;
+
+        private boolean isCurrent(ServerLevel level) {
+            return this.level == level && epoch == FactionData.getProtectionEpoch();
+        }
+
+        private void reset(ServerLevel level) {
+            byChunk.clear();
+            this.level = level;
+            this.epoch = FactionData.getProtectionEpoch();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mcprotector.protection;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.Registry;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.world.MenuProvider;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.level.block.BaseFireBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.DoorBlock;
+import net.minecraft.world.level.block.FenceGateBlock;
+import net.minecraft.world.level.block.TrapDoorBlock;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+
+final class ProtectionTraits {
+    static final int CREATE_MACHINE = 1;
+    static final int CONTAINER = 1 << 1;
+    static final int DOOR_LIKE = 1 << 2;
+    static final int REDSTONE_TOGGLE = 1 << 3;
+    static final int FIRE = 1 << 4;
+    static final int CORPSE = 1 << 5;
+    private static final String CREATE_MOD_ID = "create";
+    private static final String CORPSE_MOD_ID = "corpse";
+
+    private static volatile Tables tables;
+
+    private ProtectionTraits() {
+    }
+
+    static void rebuild() {
+        Reference2IntOpenHashMap<Block> blocks = new Reference2IntOpenHashMap<>();
+        for (Block block : BuiltInRegistries.BLOCK) {
+            int traits = classify(block);
+            if (traits != 0) {
+                blocks.put(block, traits);
+            }
+        }
+        Reference2IntOpenHashMap<BlockEntityType<?>> blockEntities = new Reference2IntOpenHashMap<>();
+        for (BlockEntityType<?> type : BuiltInRegistries.BLOCK_ENTITY_TYPE) {
+            if (isCreate(BuiltInRegistries.BLOCK_ENTITY_TYPE, type)) {
+                blockEntities.put(type, CREATE_MACHINE);
+            }
+        }
+        Reference2IntOpenHashMap<EntityType<?>> entities = new Reference2IntOpenHashMap<>();
+        for (EntityType<?> type : BuiltInRegistries.ENTITY_TYPE) {
+            ResourceLocation key = BuiltInRegistries.ENTITY_TYPE.getKey(type);
+            if (CORPSE_MOD_ID.equals(key.getNamespace()) && CORPSE_MOD_ID.equals(key.getPath())) {
+                entities.put(type, CORPSE);
+            }
+        }
+        tables = new Tables(blocks, blockEntities, entities);
+    }
+
+    static boolean has(Block block, int trait) {
+        return (tables().blocks.getInt(block) & trait) != 0;
+    }
+
+    static boolean has(BlockEntityType<?> type, int trait) {
+        return (tables().blockEntities.getInt(type) & trait) != 0;
+    }
+
+    static boolean has(EntityType<?> type, int trait) {
+        return (tables().entities.getInt(type) & trait) != 0;
+    }
+
+    private static Tables tables() {
+        Tables current = tables;
+        if (current == null) {
+            rebuild();
+            current = tables;
+        }
+        return current;
+    }
+
+    private static int classify(Block block) {
+        int traits = 0;
+        if (isCreate(BuiltInRegistries.BLOCK, block)) {
+            traits |= CREATE_MACHINE;
+        }
+        if (block instanceof MenuProvider) {
+            traits |= CONTAINER;
+        }
+        if (block instanceof DoorBlock || block instanceof TrapDoorBlock || block instanceof FenceGateBlock) {
+            traits |= DOOR_LIKE;
+        }
+        if (block == Blocks.LEVER || block.defaultBlockState().is(BlockTags.BUTTONS)) {
+            traits |= REDSTONE_TOGGLE;
+        }
+        if (block instanceof BaseFireBlock) {
+            traits |= FIRE;
+        }
+        return traits;
+    }
+
+    private static <T> boolean isCreate(Registry<T> registry, T entry) {
+        ResourceLocation key = registry.getKey(entry);
+        return key != null && CREATE_MOD_ID.equals(key.getNamespace());
+    }
+
+    private record Tables(Reference2IntOpenHashMap<Block> blocks,
+                          Reference2IntOpenHashMap<BlockEntityType<?>> blockEntities,
+                          Reference2IntOpenHashMap<EntityType<?>> entities) {
+    }
+}
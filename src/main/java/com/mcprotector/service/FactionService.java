@@ -256,7 +256,7 @@ public final class FactionService {
             source.sendFailure(Component.literal("You cannot overtake claims from an offline faction."));
             return 0;
         }
-        if (data.getClaimCount(faction.get().getId()) >= data.getMaxClaims(faction.get().getId())) {
+        if (data.getTotalClaimCount(faction.get().getId()) >= data.getMaxClaims(faction.get().getId())) {
             source.sendFailure(Component.literal("Your faction has reached its claim limit."));
             return 0;
         }
@@ -516,8 +516,57 @@ public final class FactionService {
         }
     }
 
+    public static void expireTimedState(MinecraftServer server) {
+        long now = System.currentTimeMillis();
+        FactionData data = FactionData.get(server.overworld());
+        for (FactionData.TimedStateExpiry expiry : data.expireTimedState(now)) {
+            String factionName = factionName(data, expiry.factionId());
+            switch (expiry.kind()) {
+                case FACTION_INVITE -> {
+                    ServerPlayer invited = server.getPlayerList().getPlayer(expiry.subjectId());
+                    String invitedName = invited != null ? invited.getName().getString()
+                        : server.getProfileCache().get(expiry.subjectId()).map(profile -> profile.getName())
+                            .orElse(expiry.subjectId().toString());
+                    notifyFactionMembers(server, data, expiry.factionId(), "The invite for " + invitedName + " has expired.");
+                    if (invited != null) {
+                        invited.sendSystemMessage(Component.literal("Your invite to " + factionName + " has expired."));
+                    }
+                }
+                case ALLY_INVITE -> {
+                    String targetName = factionName(data, expiry.subjectId());
+                    notifyFactionMembers(server, data, expiry.factionId(),
+                        "Your alliance proposal to " + targetName + " has expired.");
+                    notifyFactionMembers(server, data, expiry.subjectId(),
+                        "The alliance proposal from " + factionName + " has expired.");
+                }
+                case VASSAL_INVITE -> {
+                    String vassalName = factionName(data, expiry.subjectId());
+                    notifyFactionMembers(server, data, expiry.factionId(),
+                        "Your vassal offer to " + vassalName + " has expired.");
+                    notifyFactionMembers(server, data, expiry.subjectId(),
+                        "The vassal offer from " + factionName + " has expired.");
+                }
+                case WAR_END_REQUEST -> {
+                    String otherName = factionName(data, expiry.subjectId());
+                    String message = "The request to end the war between " + factionName + " and " + otherName
+                        + " has expired.";
+                    notifyFactionMembers(server, data, expiry.factionId(), message);
+                    notifyFactionMembers(server, data, expiry.subjectId(), message);
+                }
+            }
+        }
+    }
+
+    private static String factionName(FactionData data, UUID factionId) {
+        return data.getFaction(factionId).map(Faction::getName).orElse("an unknown faction");
+    }
+
     private static void notifyFactionMembers(ServerPlayer sender, FactionData data, UUID factionId, String message) {
-        for (ServerPlayer recipient : sender.server.getPlayerList().getPlayers()) {
+        notifyFactionMembers(sender.server, data, factionId, message);
+    }
+
+    private static void notifyFactionMembers(MinecraftServer server, FactionData data, UUID factionId, String message) {
+        for (ServerPlayer recipient : server.getPlayerList().getPlayers()) {
             Optional<UUID> recipientFactionId = data.getFactionIdByPlayer(recipient.getUUID());
             if (recipientFactionId.isPresent() && recipientFactionId.get().equals(factionId)) {
                 recipient.sendSystemMessage(Component.literal(message));
@@ -167,8 +167,9 @@ public final class SiegeManager {
     }
 
     public static void handleAttackerKilled(ServerPlayer attacker, ServerPlayer killer) {
-        Optional<UUID> attackerFactionId = FactionData.get(attacker.serverLevel()).getFactionIdByPlayer(attacker.getUUID());
-        Optional<UUID> killerFactionId = FactionData.get(killer.serverLevel()).getFactionIdByPlayer(killer.getUUID());
+        FactionData data = FactionData.get(attacker.serverLevel());
+        Optional<UUID> attackerFactionId = data.getFactionIdByPlayer(attacker.getUUID());
+        Optional<UUID> killerFactionId = data.getFactionIdByPlayer(killer.getUUID());
         if (attackerFactionId.isEmpty() || killerFactionId.isEmpty()) {
             return;
         }
@@ -184,10 +185,10 @@ public final class SiegeManager {
             state.setLeaderKilledAtMillis(now);
             state.updateLastAttackerPresence(now);
             MinecraftServer server = attacker.server;
-            notifyFactionMembers(server, FactionData.get(attacker.serverLevel()), state.attackerFactionId(),
+            notifyFactionMembers(server, data, state.attackerFactionId(),
                 "Siege leader killed by " + killer.getName().getString()
                     + ". Keep attackers in the claim or lose the siege.");
-            notifyFactionMembers(server, FactionData.get(attacker.serverLevel()), state.defenderFactionId(),
+            notifyFactionMembers(server, data, state.defenderFactionId(),
                 "Siege leader killed. Keep attackers out for 2 minutes to break the siege.");
         }
     }
@@ -197,26 +198,24 @@ public final class SiegeManager {
             return;
         }
         long now = System.currentTimeMillis();
-        for (ServerLevel level : server.getAllLevels()) {
-            FactionData data = FactionData.get(level);
-            for (Map.Entry<UUID, FactionData.VassalBreakaway> entry : java.util.List.copyOf(data.getActiveBreakaways().entrySet())) {
-                UUID vassalId = entry.getKey();
-                FactionData.VassalBreakaway breakaway = entry.getValue();
-                maybeSendBreakawayStatus(server, data, vassalId, breakaway, now);
-                if (now - breakaway.startedAt() < BREAKAWAY_DEFENSE_MILLIS) {
-                    continue;
-                }
-                BREAKAWAY_STATUS_BROADCASTS.remove(vassalId);
-                if (data.releaseVassal(breakaway.overlordId(), vassalId)) {
-                    clearWarRelation(data, vassalId, breakaway.overlordId());
-                    notifyFactionMembers(server, data, vassalId,
-                        "Your faction has defended long enough to win its breakaway war and is now independent.");
-                    notifyFactionMembers(server, data, breakaway.overlordId(),
-                        "Your vassal has defended long enough to win their breakaway war and is now independent.");
-                } else {
-                    data.cancelVassalBreakaway(vassalId, breakaway.overlordId());
-                    clearWarRelation(data, vassalId, breakaway.overlordId());
-                }
+        FactionData data = FactionData.get(server.overworld());
+        for (Map.Entry<UUID, FactionData.VassalBreakaway> entry : java.util.List.copyOf(data.getActiveBreakaways().entrySet())) {
+            UUID vassalId = entry.getKey();
+            FactionData.VassalBreakaway breakaway = entry.getValue();
+            maybeSendBreakawayStatus(server, data, vassalId, breakaway, now);
+            if (now - breakaway.startedAt() < BREAKAWAY_DEFENSE_MILLIS) {
+                continue;
+            }
+            BREAKAWAY_STATUS_BROADCASTS.remove(vassalId);
+            if (data.releaseVassal(breakaway.overlordId(), vassalId)) {
+                clearWarRelation(data, vassalId, breakaway.overlordId());
+                notifyFactionMembers(server, data, vassalId,
+                    "Your faction has defended long enough to win its breakaway war and is now independent.");
+                notifyFactionMembers(server, data, breakaway.overlordId(),
+                    "Your vassal has defended long enough to win their breakaway war and is now independent.");
+            } else {
+                data.cancelVassalBreakaway(vassalId, breakaway.overlordId());
+                clearWarRelation(data, vassalId, breakaway.overlordId());
             }
         }
     }
@@ -1,6 +1,7 @@
 package com.mcprotector.webmap;
 
 import com.mcprotector.McProtectorMod;
+import com.mcprotector.data.ClaimKind;
 import com.mcprotector.data.Faction;
 import net.minecraft.world.level.ChunkPos;
 
@@ -92,20 +93,20 @@ public final class SquaremapBridge {
             ensureLayerProvider(world, dimension);
             Map<String, Object> markers = markersByWorld.computeIfAbsent(dimension, key -> new HashMap<>());
             markers.clear();
-            for (Map.Entry<Long, java.util.UUID> entry : data.getClaims().entrySet()) {
-                ChunkPos chunkPos = new ChunkPos(entry.getKey());
-                Optional<Faction> faction = data.getFaction(entry.getValue());
-                if (faction.isPresent()) {
-                    markers.put(markerId(chunkPos), createMarker(chunkPos, faction.get(), false));
+            data.forEachClaim((chunkKey, kind, ownerId) -> {
+                if (kind == ClaimKind.PERSONAL) {
+                    return;
                 }
-            }
-            for (Map.Entry<Long, java.util.UUID> entry : data.getSafeZoneClaims().entrySet()) {
-                ChunkPos chunkPos = new ChunkPos(entry.getKey());
-                Optional<Faction> faction = data.getFaction(entry.getValue());
+                ChunkPos chunkPos = new ChunkPos(chunkKey);
+                Optional<Faction> faction = data.getFaction(ownerId);
                 if (faction.isPresent()) {
-                    markers.put(markerId(chunkPos), createMarker(chunkPos, faction.get(), true));
+                    try {
+                        markers.put(markerId(chunkPos), createMarker(chunkPos, faction.get(), kind == ClaimKind.SAFE_ZONE));
+                    } catch (Exception error) {
+                        throw new IllegalStateException(error.getMessage(), error);
+                    }
                 }
-            }
+            });
         } catch (Throwable error) {
             McProtectorMod.LOGGER.warn("Failed to sync Squaremap markers: {}", error.getMessage());
         }
@@ -0,0 +1,89 @@
+package com.mcprotector.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimIndexTest {
+    @Test
+    void packsKindAndHandle() {
+        for (ClaimKind kind : ClaimKind.values()) {
+            int packed = ClaimIndex.pack(kind, 12345);
+            assertEquals(kind, ClaimIndex.kindOf(packed));
+            assertEquals(12345, ClaimIndex.handleOf(packed));
+            assertTrue(ClaimIndex.isKind(packed, kind));
+        }
+        assertNull(ClaimIndex.kindOf(ClaimIndex.EMPTY));
+        assertFalse(ClaimIndex.isKind(ClaimIndex.EMPTY, ClaimKind.FACTION));
+        assertThrows(IllegalArgumentException.class, () -> ClaimIndex.pack(ClaimKind.FACTION, -1));
+        assertThrows(IllegalArgumentException.class, () -> ClaimIndex.pack(ClaimKind.FACTION, 1 << 30));
+    }
+
+    @Test
+    void removeKeepsCollidingKeysReachable() {
+        ClaimIndex index = new ClaimIndex();
+        for (long key = 0; key < 12; key++) {
+            index.put(key, ClaimIndex.pack(ClaimKind.FACTION, (int) key));
+        }
+        for (long key = 0; key < 12; key += 2) {
+            assertEquals(ClaimIndex.pack(ClaimKind.FACTION, (int) key), index.remove(key));
+        }
+        for (long key = 0; key < 12; key++) {
+            int expected = key % 2 == 0 ? ClaimIndex.EMPTY : ClaimIndex.pack(ClaimKind.FACTION, (int) key);
+            assertEquals(expected, index.get(key), "key " + key);
+        }
+        assertEquals(6, index.size());
+        assertEquals(ClaimIndex.EMPTY, index.remove(0L));
+    }
+
+    @Test
+    void matchesReferenceMapUnderChurn() {
+        ClaimIndex index = new ClaimIndex();
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(20240611L);
+        ClaimKind[] kinds = ClaimKind.values();
+        for (int step = 0; step < 200_000; step++) {
+            long key = random.nextInt(512) - 256L << 32 | random.nextInt(64);
+            if (random.nextInt(3) == 0) {
+                Integer previous = reference.remove(key);
+                assertEquals(previous == null ? ClaimIndex.EMPTY : previous, index.remove(key));
+            } else {
+                int packed = ClaimIndex.pack(kinds[random.nextInt(kinds.length)], random.nextInt(1000));
+                Integer previous = reference.put(key, packed);
+                assertEquals(previous == null ? ClaimIndex.EMPTY : previous, index.put(key, packed));
+            }
+        }
+        assertEquals(reference.size(), index.size());
+        reference.forEach((key, packed) -> assertEquals(packed, index.get(key)));
+        Map<Long, Integer> visited = new HashMap<>();
+        index.forEach((key, packed) -> assertNull(visited.put(key, packed)));
+        assertEquals(reference, visited);
+        for (ClaimKind kind : kinds) {
+            long expected = reference.values().stream().filter(packed -> ClaimIndex.isKind(packed, kind)).count();
+            assertEquals(expected, index.size(kind));
+            assertEquals(expected, index.view(kind, handle -> null).entrySet().size());
+        }
+    }
+
+    @Test
+    void overwriteMovesKindCounts() {
+        ClaimIndex index = new ClaimIndex();
+        index.put(7L, ClaimIndex.pack(ClaimKind.FACTION, 1));
+        index.put(7L, ClaimIndex.pack(ClaimKind.PERSONAL, 2));
+        assertEquals(1, index.size());
+        assertEquals(0, index.size(ClaimKind.FACTION));
+        assertEquals(1, index.size(ClaimKind.PERSONAL));
+        index.put(7L, ClaimIndex.EMPTY);
+        assertEquals(0, index.size());
+        assertEquals(0, index.size(ClaimKind.PERSONAL));
+        assertFalse(index.contains(7L));
+    }
+}
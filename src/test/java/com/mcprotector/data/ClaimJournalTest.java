@@ -0,0 +1,226 @@
+package com.mcprotector.data;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimJournalTest {
+    private static final UUID FACTION = new UUID(1L, 2L);
+    private static final UUID OTHER = new UUID(3L, 4L);
+    private static final UUID PLAYER = new UUID(5L, 6L);
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void runWritesInline() {
+        DataSaveExecutor.setSynchronous(true);
+    }
+
+    @Test
+    void replaysEveryRecordType() {
+        ClaimJournal journal = ClaimJournal.open(directory, new Recorder());
+        journal.claimPut(42L, ClaimKind.SAFE_ZONE, FACTION);
+        journal.claimRemove(-7L);
+        journal.memberSet(FACTION, PLAYER, "OFFICER");
+        journal.memberRemove(PLAYER);
+        journal.factionCreate(FACTION, "Iron_Guard", PLAYER);
+        journal.factionRename(FACTION, "Zeläda");
+        journal.factionDisband(OTHER);
+        journal.relationSet(FACTION, OTHER, FactionRelation.ALLY);
+        journal.relationSet(FACTION, OTHER, null);
+        journal.factionState(FACTION, new byte[] {10, 0, -1});
+        journal.claimBoost(FACTION, -3);
+        journal.homeSet(FACTION, "minecraft:the_nether", 123456789L);
+        journal.vassalContract(FACTION, OTHER, 1000L);
+        journal.vassalContract(FACTION, null, 0L);
+        journal.vassalBreakaway(FACTION, OTHER, 8, 2, 2000L);
+        journal.vassalBreakaway(FACTION, null, 0, 0, 0L);
+        journal.warState(FACTION, OTHER, 3000L, PLAYER);
+        journal.warState(FACTION, OTHER, null, null);
+        journal.close();
+
+        Recorder replayed = new Recorder();
+        ClaimJournal.open(directory, replayed).close();
+        assertEquals(List.of(
+            "claimPut 42 SAFE_ZONE " + FACTION,
+            "claimRemove -7",
+            "memberSet " + FACTION + " " + PLAYER + " OFFICER",
+            "memberRemove " + PLAYER,
+            "factionCreate " + FACTION + " Iron_Guard " + PLAYER,
+            "factionRename " + FACTION + " Zeläda",
+            "factionDisband " + OTHER,
+            "relationSet " + FACTION + " " + OTHER + " ALLY",
+            "relationSet " + FACTION + " " + OTHER + " null",
+            "factionState " + FACTION + " [10, 0, -1]",
+            "claimBoost " + FACTION + " -3",
+            "homeSet " + FACTION + " minecraft:the_nether 123456789",
+            "vassalContract " + FACTION + " " + OTHER + " 1000",
+            "vassalContract " + FACTION + " null 0",
+            "vassalBreakaway " + FACTION + " " + OTHER + " 8 2 2000",
+            "vassalBreakaway " + FACTION + " null 0 0 0",
+            "warState " + FACTION + " " + OTHER + " 3000 " + PLAYER,
+            "warState " + FACTION + " " + OTHER + " null null"
+        ), replayed.events);
+    }
+
+    @Test
+    void stopsAtTruncatedTail() throws IOException {
+        Path segment = writeTwoClaims();
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+
+        Recorder replayed = new Recorder();
+        ClaimJournal.open(directory, replayed).close();
+        assertEquals(List.of("claimPut 1 FACTION " + FACTION), replayed.events);
+    }
+
+    @Test
+    void stopsAtCorruptTail() throws IOException {
+        Path segment = writeTwoClaims();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 1] ^= 0x5A;
+        Files.write(segment, bytes);
+
+        Recorder replayed = new Recorder();
+        ClaimJournal.open(directory, replayed).close();
+        assertEquals(List.of("claimPut 1 FACTION " + FACTION), replayed.events);
+    }
+
+    @Test
+    void discardDropsOnlyRotatedSegments() {
+        ClaimJournal journal = ClaimJournal.open(directory, new Recorder());
+        journal.claimPut(1L, ClaimKind.FACTION, FACTION);
+        long rotated = journal.rotate();
+        journal.claimPut(2L, ClaimKind.PERSONAL, PLAYER);
+        journal.sync();
+        journal.discardThrough(rotated);
+        journal.close();
+
+        assertFalse(Files.exists(directory.resolve(rotated + ".wal")));
+        assertTrue(Files.exists(directory.resolve((rotated + 1) + ".wal")));
+        Recorder replayed = new Recorder();
+        ClaimJournal.open(directory, replayed).close();
+        assertEquals(List.of("claimPut 2 PERSONAL " + PLAYER), replayed.events);
+    }
+
+    @Test
+    void reopenedJournalAppendsToFreshSegment() {
+        ClaimJournal first = ClaimJournal.open(directory, new Recorder());
+        first.claimPut(1L, ClaimKind.FACTION, FACTION);
+        first.close();
+        ClaimJournal second = ClaimJournal.open(directory, new Recorder());
+        second.claimRemove(1L);
+        second.close();
+
+        Recorder replayed = new Recorder();
+        ClaimJournal.open(directory, replayed).close();
+        assertEquals(List.of("claimPut 1 FACTION " + FACTION, "claimRemove 1"), replayed.events);
+    }
+
+    private Path writeTwoClaims() {
+        ClaimJournal journal = ClaimJournal.open(directory, new Recorder());
+        journal.claimPut(1L, ClaimKind.FACTION, FACTION);
+        journal.claimPut(2L, ClaimKind.FACTION, OTHER);
+        journal.close();
+        return directory.resolve("1.wal");
+    }
+
+    private static final class Recorder implements ClaimJournal.Replayer {
+        private final List<String> events = new ArrayList<>();
+
+        private void record(Object... parts) {
+            StringBuilder builder = new StringBuilder();
+            for (Object part : parts) {
+                if (!builder.isEmpty()) {
+                    builder.append(' ');
+                }
+                builder.append(part);
+            }
+            events.add(builder.toString());
+        }
+
+        @Override
+        public void claimPut(long chunkKey, ClaimKind kind, UUID owner) {
+            record("claimPut", chunkKey, kind, owner);
+        }
+
+        @Override
+        public void claimRemove(long chunkKey) {
+            record("claimRemove", chunkKey);
+        }
+
+        @Override
+        public void memberSet(UUID factionId, UUID playerId, String role) {
+            record("memberSet", factionId, playerId, role);
+        }
+
+        @Override
+        public void memberRemove(UUID playerId) {
+            record("memberRemove", playerId);
+        }
+
+        @Override
+        public void factionCreate(UUID factionId, String name, UUID ownerId) {
+            record("factionCreate", factionId, name, ownerId);
+        }
+
+        @Override
+        public void factionRename(UUID factionId, String name) {
+            record("factionRename", factionId, name);
+        }
+
+        @Override
+        public void factionDisband(UUID factionId) {
+            record("factionDisband", factionId);
+        }
+
+        @Override
+        public void relationSet(UUID source, UUID target, FactionRelation relation) {
+            record("relationSet", source, target, relation);
+        }
+
+        @Override
+        public void factionState(UUID factionId, byte[] state) {
+            record("factionState", factionId, Arrays.toString(state));
+        }
+
+        @Override
+        public void claimBoost(UUID factionId, int boost) {
+            record("claimBoost", factionId, boost);
+        }
+
+        @Override
+        public void homeSet(UUID factionId, String dimension, long pos) {
+            record("homeSet", factionId, dimension, pos);
+        }
+
+        @Override
+        public void vassalContract(UUID vassalId, UUID overlordId, long startedAt) {
+            record("vassalContract", vassalId, overlordId, startedAt);
+        }
+
+        @Override
+        public void vassalBreakaway(UUID vassalId, UUID overlordId, int requiredClaims, int capturedClaims,
+                                    long startedAt) {
+            record("vassalBreakaway", vassalId, overlordId, requiredClaims, capturedClaims, startedAt);
+        }
+
+        @Override
+        public void warState(UUID first, UUID second, Long declaredAt, UUID declaredBy) {
+            record("warState", first, second, declaredAt, declaredBy);
+        }
+    }
+}
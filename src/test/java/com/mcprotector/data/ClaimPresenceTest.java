@@ -0,0 +1,99 @@
+package com.mcprotector.data;
+
+import net.minecraft.world.level.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimPresenceTest {
+    @Test
+    void regionStaysPresentUntilLastChunkLeaves() {
+        ClaimPresence presence = new ClaimPresence();
+        presence.add(ChunkPos.asLong(3, 4));
+        presence.add(ChunkPos.asLong(5, 6));
+        presence.remove(ChunkPos.asLong(3, 4));
+
+        assertFalse(presence.contains(3, 4));
+        assertTrue(presence.contains(5, 6));
+        assertTrue(presence.mayContain(3, 4));
+
+        presence.remove(ChunkPos.asLong(5, 6));
+        assertFalse(presence.mayContain(5, 6));
+        presence.remove(ChunkPos.asLong(5, 6));
+        assertFalse(presence.mayContain(5, 6));
+    }
+
+    @Test
+    void bucketsClearOnlyWhenEveryRegionIsGone() {
+        ClaimPresence presence = new ClaimPresence();
+        int span = 200;
+        for (int regionX = -span; regionX < span; regionX++) {
+            for (int regionZ = -span; regionZ < span; regionZ++) {
+                presence.add(ChunkPos.asLong(regionX * ClaimShardStore.REGION_SIZE, regionZ * ClaimShardStore.REGION_SIZE));
+            }
+        }
+        for (int regionX = -span; regionX < span; regionX++) {
+            for (int regionZ = -span; regionZ < span; regionZ++) {
+                if (regionX != 7 || regionZ != -9) {
+                    presence.remove(ChunkPos.asLong(regionX * ClaimShardStore.REGION_SIZE, regionZ * ClaimShardStore.REGION_SIZE));
+                }
+            }
+        }
+
+        int survivorX = 7 * ClaimShardStore.REGION_SIZE;
+        int survivorZ = -9 * ClaimShardStore.REGION_SIZE;
+        assertTrue(presence.contains(survivorX, survivorZ));
+        assertTrue(presence.mayContain(survivorX + 1, survivorZ + 1));
+        int stillMarked = 0;
+        for (int regionX = -span; regionX < span; regionX++) {
+            for (int regionZ = -span; regionZ < span; regionZ++) {
+                int chunkX = regionX * ClaimShardStore.REGION_SIZE;
+                int chunkZ = regionZ * ClaimShardStore.REGION_SIZE;
+                if (chunkX != survivorX || chunkZ != survivorZ) {
+                    assertFalse(presence.contains(chunkX, chunkZ));
+                    if (presence.mayContain(chunkX, chunkZ)) {
+                        stillMarked++;
+                    }
+                }
+            }
+        }
+        assertTrue(stillMarked < span * span / 100, "stale buckets: " + stillMarked);
+
+        presence.remove(ChunkPos.asLong(survivorX, survivorZ));
+        for (int regionX = -span; regionX < span; regionX++) {
+            for (int regionZ = -span; regionZ < span; regionZ++) {
+                assertFalse(presence.mayContain(regionX * ClaimShardStore.REGION_SIZE, regionZ * ClaimShardStore.REGION_SIZE));
+            }
+        }
+    }
+
+    @Test
+    void areaVisitReportsExactlyTheClaimedChunks() {
+        ClaimPresence presence = new ClaimPresence();
+        Set<Long> claimed = new HashSet<>();
+        for (int i = -40; i < 40; i += 3) {
+            long key = ChunkPos.asLong(i, i * 2 - 5);
+            presence.add(key);
+            claimed.add(key);
+        }
+        Set<Long> expected = new HashSet<>();
+        for (long key : claimed) {
+            int chunkX = ChunkPos.getX(key);
+            int chunkZ = ChunkPos.getZ(key);
+            if (chunkX >= -20 && chunkX <= 20 && chunkZ >= -50 && chunkZ <= 10) {
+                expected.add(key);
+            }
+        }
+        Set<Long> narrow = new HashSet<>();
+        presence.forEachInArea(-20, -50, 20, 10, narrow::add);
+        assertEquals(expected, narrow);
+        Set<Long> wide = new HashSet<>();
+        presence.forEachInArea(-100_000, -100_000, 100_000, 100_000, wide::add);
+        assertEquals(claimed, wide);
+    }
+}
@@ -0,0 +1,99 @@
+package com.mcprotector.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiryWheelTest {
+    private static final long TICK = 1000L;
+
+    @Test
+    void expiresOnTimeAcrossLevelBoundaries() {
+        long start = 100 * TICK;
+        ExpiryWheel<Long> wheel = new ExpiryWheel<>(TICK, start);
+        long[] deltas = {1, 27, 63, 64, 65, 127, 128, 4095, 4096, 4097, 70_000, 262_143, 262_144, 262_145, 300_000};
+        for (long delta : deltas) {
+            wheel.schedule(delta, start + delta * TICK);
+        }
+        Map<Long, Long> expiredAt = new HashMap<>();
+        long last = deltas[deltas.length - 1];
+        for (long elapsed = 0; elapsed <= last + 1; elapsed++) {
+            long tick = elapsed;
+            wheel.advance(start + elapsed * TICK, key -> assertNull(expiredAt.put(key, tick)));
+        }
+        for (long delta : deltas) {
+            assertEquals(delta, expiredAt.get(delta), "delta " + delta);
+        }
+    }
+
+    @Test
+    void singleLargeAdvanceExpiresEverythingDue() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 0L);
+        wheel.schedule("soon", 5 * TICK);
+        wheel.schedule("middle", 5000 * TICK);
+        wheel.schedule("late", 400_000 * TICK);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(5000 * TICK, expired::add);
+        assertEquals(List.of("soon", "middle"), expired);
+        expired.clear();
+        wheel.advance(400_000 * TICK - 1, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(400_000 * TICK, expired::add);
+        assertEquals(List.of("late"), expired);
+    }
+
+    @Test
+    void deadlinesBeyondWheelSpanStillExpire() {
+        long span = 1L << 24;
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 0L);
+        wheel.schedule("far", (span + 10) * TICK);
+        List<String> expired = new ArrayList<>();
+        wheel.advance((span + 9) * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance((span + 10) * TICK, expired::add);
+        assertEquals(List.of("far"), expired);
+    }
+
+    @Test
+    void partialTicksRoundUp() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 0L);
+        wheel.schedule("key", 64 * TICK + 1);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(64 * TICK + 999, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(65 * TICK, expired::add);
+        assertEquals(List.of("key"), expired);
+    }
+
+    @Test
+    void cancelAndRescheduleReplaceDeadline() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 0L);
+        wheel.schedule("cancelled", 70 * TICK);
+        wheel.schedule("moved", 70 * TICK);
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("cancelled"));
+        wheel.schedule("moved", 5000 * TICK);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(4999 * TICK, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(5000 * TICK, expired::add);
+        assertEquals(List.of("moved"), expired);
+    }
+
+    @Test
+    void pastDeadlinesExpireOnNextAdvance() {
+        ExpiryWheel<String> wheel = new ExpiryWheel<>(TICK, 10 * TICK);
+        wheel.schedule("stale", 2 * TICK);
+        List<String> expired = new ArrayList<>();
+        wheel.advance(10 * TICK, expired::add);
+        assertEquals(List.of("stale"), expired);
+    }
+}
@@ -0,0 +1,80 @@
+package com.mcprotector.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FactionNameIndexTest {
+    @Test
+    void findsNamesAndPrefixesIgnoringCase() {
+        FactionNameIndex index = new FactionNameIndex();
+        UUID guard = UUID.randomUUID();
+        UUID traders = UUID.randomUUID();
+        index.add(guard, "Iron_Guard");
+        index.add(traders, "River_Traders");
+
+        assertEquals(Set.of(guard), index.find(" iron_guard "));
+        assertTrue(index.find("iron").isEmpty());
+        assertEquals(Set.of(guard), Set.copyOf(index.matchingPrefix("IR")));
+        assertEquals(Set.of(guard), Set.copyOf(index.matchingPrefix("gua")));
+        assertEquals(Set.of(guard, traders), Set.copyOf(index.matchingPrefix("")));
+    }
+
+    @Test
+    void similarityExcludesTheFactionItself() {
+        FactionNameIndex index = new FactionNameIndex();
+        UUID guard = UUID.randomUUID();
+        index.add(guard, "Iron_Guard");
+
+        assertTrue(index.hasSimilar("IronGuard", null));
+        assertTrue(index.hasSimilar("Iron-Guards", null));
+        assertFalse(index.hasSimilar("IronGuard", guard));
+        assertFalse(index.hasSimilar("Stone_Keep", null));
+    }
+
+    @Test
+    void removalsSurviveTreeRebuild() {
+        FactionNameIndex index = new FactionNameIndex();
+        UUID[] ids = new UUID[40];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID();
+            index.add(ids[i], name(i));
+        }
+        for (int i = 0; i < ids.length; i += 4) {
+            index.remove(ids[i], name(i));
+        }
+        for (int i = 1; i < ids.length; i += 2) {
+            index.remove(ids[i], name(i));
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            boolean present = i % 4 == 2;
+            assertEquals(present ? Set.of(ids[i]) : Set.of(), index.find(name(i)), name(i));
+            assertEquals(present, index.hasSimilar(name(i), null), name(i));
+            assertFalse(index.hasSimilar(name(i), ids[i]), name(i));
+        }
+    }
+
+    @Test
+    void sharedNormalizedNameKeepsOtherOwner() {
+        FactionNameIndex index = new FactionNameIndex();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        index.add(first, "Night_Watch");
+        index.add(second, "NightWatch");
+        index.remove(first, "Night_Watch");
+
+        assertTrue(index.find("Night_Watch").isEmpty());
+        assertTrue(index.hasSimilar("night watch", first));
+        assertFalse(index.hasSimilar("night watch", second));
+    }
+
+    private static String name(int i) {
+        return "Clan_" + Integer.toString(1_000_000 + i * 7919, 36);
+    }
+}